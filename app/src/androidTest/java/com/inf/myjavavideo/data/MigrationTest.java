@@ -0,0 +1,136 @@
+package com.inf.myjavavideo.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.inf.myjavavideo.data.model.PlaylistVideo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 从版本6依次迁移到当前版本，检查重复路径的合并结果，并由MigrationTestHelper按导出的结构校验最终的表
+ * 版本6早于结构导出，起始数据库按当时Room生成的建表语句直接创建
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+    private static final String TEST_DB = "migration-test";
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), AppDatabase.class);
+
+    private Context context;
+
+    @Before
+    public void createVersion6Database() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+
+        try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null)) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS users (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "username TEXT, password TEXT, phone TEXT, avatar TEXT, studentId TEXT, email TEXT)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS videos (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "title TEXT, path TEXT, thumbnailPath TEXT, duration INTEGER NOT NULL, " +
+                    "last_played_position INTEGER NOT NULL, date_added INTEGER NOT NULL, " +
+                    "is_favorite INTEGER NOT NULL, size INTEGER NOT NULL, source_type TEXT)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS playlists (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "name TEXT, dateCreated INTEGER NOT NULL, userId INTEGER NOT NULL, thumbnailPath TEXT)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS playlist_videos (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "playlistId INTEGER NOT NULL, videoId INTEGER NOT NULL, position INTEGER NOT NULL, " +
+                    "FOREIGN KEY(playlistId) REFERENCES playlists(id) ON UPDATE NO ACTION ON DELETE CASCADE, " +
+                    "FOREIGN KEY(videoId) REFERENCES videos(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_playlist_videos_playlistId ON playlist_videos (playlistId)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_playlist_videos_videoId ON playlist_videos (videoId)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS subtitles (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "video_id INTEGER NOT NULL, start_time INTEGER NOT NULL, end_time INTEGER NOT NULL, text TEXT, " +
+                    "FOREIGN KEY(video_id) REFERENCES videos(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_subtitles_video_id ON subtitles (video_id)");
+
+            // 视频1和2路径相同，只有重复的视频2被收藏；视频1的添加时间仍以秒保存
+            db.execSQL("INSERT INTO videos (id, title, path, thumbnailPath, duration, last_played_position, " +
+                    "date_added, is_favorite, size, source_type) VALUES " +
+                    "(1, 'a', '/sdcard/a.mp4', '', 1000, 0, 1600000000, 0, 10, 'file'), " +
+                    "(2, NULL, '/sdcard/a.mp4', '', 1000, 0, 1600000001000, 1, 10, 'file'), " +
+                    "(3, NULL, '/sdcard/b.mp4', '', 1000, 0, 1600000002000, 0, 10, 'file')");
+            db.execSQL("INSERT INTO playlists (id, name, dateCreated, userId, thumbnailPath) " +
+                    "VALUES (1, 'list', 0, 1, '')");
+            // 合并后视频1会在同一播放列表中出现两次，只保留先加入的一条
+            db.execSQL("INSERT INTO playlist_videos (id, playlistId, videoId, position) VALUES " +
+                    "(1, 1, 1, 0), (2, 1, 2, 1), (3, 1, 3, 1)");
+            db.execSQL("INSERT INTO subtitles (id, video_id, start_time, end_time, text) " +
+                    "VALUES (1, 2, 0, 1000, 'hello')");
+            db.setVersion(6);
+        }
+    }
+
+    @Test
+    public void migrate6To13_mergesDuplicatePaths() throws Exception {
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, 13, true,
+                AppDatabase.MIGRATION_6_7,
+                AppDatabase.MIGRATION_7_8,
+                AppDatabase.MIGRATION_8_9,
+                AppDatabase.MIGRATION_9_10,
+                AppDatabase.MIGRATION_10_11,
+                AppDatabase.MIGRATION_11_12,
+                AppDatabase.MIGRATION_12_13);
+
+        try (Cursor cursor = db.query("SELECT id, title, is_favorite, date_added FROM videos ORDER BY id")) {
+            assertEquals(2, cursor.getCount());
+
+            cursor.moveToNext();
+            assertEquals(1, cursor.getInt(0));
+            assertEquals("a", cursor.getString(1));
+            // 重复记录的收藏合并到保留的记录
+            assertEquals(1, cursor.getInt(2));
+            assertEquals(1600000000000L, cursor.getLong(3));
+
+            cursor.moveToNext();
+            assertEquals(3, cursor.getInt(0));
+            assertEquals("", cursor.getString(1));
+            assertEquals(0, cursor.getInt(2));
+            assertEquals(1600000002000L, cursor.getLong(3));
+        }
+
+        try (Cursor cursor = db.query("SELECT video_id FROM subtitles WHERE id = 1")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getInt(0));
+        }
+
+        try (Cursor cursor = db.query("SELECT videoId, position FROM playlist_videos " +
+                "WHERE playlistId = 1 ORDER BY position")) {
+            assertEquals(2, cursor.getCount());
+            cursor.moveToNext();
+            assertEquals(1, cursor.getInt(0));
+            assertEquals(PlaylistVideo.POSITION_GAP, cursor.getInt(1));
+            cursor.moveToNext();
+            assertEquals(3, cursor.getInt(0));
+            assertEquals(2 * PlaylistVideo.POSITION_GAP, cursor.getInt(1));
+            assertFalse(cursor.moveToNext());
+        }
+
+        // 迁移后路径唯一
+        try {
+            db.execSQL("INSERT INTO videos (title, path, duration, last_played_position, date_added, " +
+                    "is_favorite, size, media_store_id, width, height, bitrate, rotation, frame_rate) " +
+                    "VALUES ('dup', '/sdcard/a.mp4', 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0)");
+            fail("路径重复的视频不应插入成功");
+        } catch (SQLiteConstraintException expected) {
+            // 唯一索引生效
+        }
+    }
+}
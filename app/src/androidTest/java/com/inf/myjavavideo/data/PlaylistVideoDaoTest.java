@@ -0,0 +1,89 @@
+package com.inf.myjavavideo.data;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.inf.myjavavideo.data.dao.PlaylistVideoDao;
+import com.inf.myjavavideo.data.model.Playlist;
+import com.inf.myjavavideo.data.model.PlaylistVideo;
+import com.inf.myjavavideo.data.model.Video;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 检查PlaylistVideoDao.moveAll按给定顺序重新分配排序值
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlaylistVideoDaoTest {
+    private AppDatabase database;
+    private PlaylistVideoDao playlistVideoDao;
+    private int playlistId;
+    private final List<Integer> videoIds = new ArrayList<>();
+
+    @Before
+    public void createDatabase() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        playlistVideoDao = database.playlistVideoDao();
+
+        playlistId = (int) database.playlistDao().insert(new Playlist("test", 1));
+        for (int i = 0; i < 4; i++) {
+            int videoId = (int) database.videoDao().insert(new Video("video" + i, "/sdcard/video" + i + ".mp4", "", 0));
+            videoIds.add(videoId);
+            playlistVideoDao.appendVideo(playlistId, videoId);
+        }
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void moveAll_writesGivenOrderWithGaps() {
+        List<Integer> reversed = Arrays.asList(videoIds.get(3), videoIds.get(2), videoIds.get(1), videoIds.get(0));
+        playlistVideoDao.moveAll(playlistId, reversed);
+
+        List<PlaylistVideo> items = playlistVideoDao.getPlaylistVideos(playlistId);
+        assertEquals(reversed, videoIdsOf(items));
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals((i + 1) * PlaylistVideo.POSITION_GAP, items.get(i).getPosition());
+        }
+    }
+
+    @Test
+    public void moveAll_keepsUnlistedMembersAfterListedOnes() {
+        playlistVideoDao.moveAll(playlistId, Arrays.asList(videoIds.get(2), videoIds.get(0)));
+
+        assertEquals(Arrays.asList(videoIds.get(2), videoIds.get(0), videoIds.get(1), videoIds.get(3)),
+                videoIdsOf(playlistVideoDao.getPlaylistVideos(playlistId)));
+    }
+
+    @Test
+    public void moveAll_ignoresVideosNotInPlaylist() {
+        playlistVideoDao.moveAll(playlistId, Arrays.asList(-5, videoIds.get(1), videoIds.get(1)));
+
+        assertEquals(Arrays.asList(videoIds.get(1), videoIds.get(0), videoIds.get(2), videoIds.get(3)),
+                videoIdsOf(playlistVideoDao.getPlaylistVideos(playlistId)));
+    }
+
+    private static List<Integer> videoIdsOf(List<PlaylistVideo> items) {
+        List<Integer> ids = new ArrayList<>();
+        for (PlaylistVideo item : items) {
+            ids.add(item.getVideoId());
+        }
+        return ids;
+    }
+}
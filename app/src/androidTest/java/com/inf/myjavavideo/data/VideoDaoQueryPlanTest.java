@@ -0,0 +1,118 @@
+package com.inf.myjavavideo.data;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.inf.myjavavideo.data.dao.VideoDao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 检查VideoDao的常用查询都使用索引，不做全表扫描或临时排序
+ * 直接使用VideoDao中@Query引用的SQL常量；命名参数按首次出现的顺序绑定，
+ * 同名参数只绑定一次，IN (:list)按单个元素绑定
+ */
+@RunWith(AndroidJUnit4.class)
+public class VideoDaoQueryPlanTest {
+    private AppDatabase database;
+    private SupportSQLiteDatabase db;
+
+    @Before
+    public void createDatabase() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        db = database.getOpenHelper().getWritableDatabase();
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void getVideoByPath_usesPathIndex() {
+        assertUsesIndex(VideoDao.BY_PATH, "/sdcard/a.mp4");
+    }
+
+    @Test
+    public void getVideosByPaths_usesPathIndex() {
+        assertUsesIndex(VideoDao.BY_PATHS, "/sdcard/a.mp4");
+    }
+
+    @Test
+    public void getVideosByPathRange_usesPathIndex() {
+        assertUsesIndex(VideoDao.BY_PATH_RANGE, "content://", "content:/0");
+    }
+
+    @Test
+    public void getVideosByTitle_usesTitleIndex() {
+        assertUsesIndex(VideoDao.TITLE_FIRST_PAGE, 60);
+        assertUsesIndex(VideoDao.TITLE_NEXT_PAGE, "a", 1, 60);
+    }
+
+    @Test
+    public void getVideosByDateAdded_usesDateAddedIndex() {
+        assertUsesIndex(VideoDao.DATE_ADDED_FIRST_PAGE, 60);
+        assertUsesIndex(VideoDao.DATE_ADDED_NEXT_PAGE, 1000L, 1, 60);
+    }
+
+    @Test
+    public void getFavoriteVideos_usesFavoriteIndex() {
+        assertUsesIndex(VideoDao.FAVORITE_FIRST_PAGE, 60);
+        assertUsesIndex(VideoDao.FAVORITE_NEXT_PAGE, 1000L, 1, 60);
+    }
+
+    @Test
+    public void mediaStoreQueries_useMediaStoreIdIndex() {
+        assertUsesIndex(VideoDao.BY_MEDIA_STORE_ID, 1L);
+        assertUsesIndex(VideoDao.SYNCED_MEDIA_STORE_IDS);
+        assertUsesIndex(VideoDao.BY_MEDIA_STORE_IDS, 1L);
+        assertUsesIndex(VideoDao.DELETE_SYNCED_BY_MEDIA_STORE_IDS, 1L);
+    }
+
+    @Test
+    public void getVideoByFingerprint_usesFingerprintIndex() {
+        assertUsesIndex(VideoDao.BY_FINGERPRINT, "abc");
+    }
+
+    @Test
+    public void idQueries_usePrimaryKey() {
+        assertUsesIndex(VideoDao.BY_IDS, 1);
+        assertUsesIndex(VideoDao.NEXT_BY_ID, 1);
+        assertUsesIndex(VideoDao.PREVIOUS_BY_ID, 1);
+    }
+
+    // 执行EXPLAIN QUERY PLAN，args按命名参数首次出现的顺序排列，要求每一步都通过索引或主键访问videos表，且不需要临时B树排序
+    private void assertUsesIndex(String sql, Object... args) {
+        List<String> details = new ArrayList<>();
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(detailIndex));
+            }
+        }
+
+        assertFalse("没有查询计划: " + sql, details.isEmpty());
+        for (String detail : details) {
+            assertFalse("需要临时排序: " + sql + " -> " + details, detail.contains("TEMP B-TREE"));
+            if (detail.contains("videos")) {
+                // 旧版SQLite输出"SCAN TABLE videos"，新版输出"SCAN videos"，走索引时都带有USING
+                assertTrue("全表扫描: " + sql + " -> " + details, detail.contains("USING"));
+            }
+        }
+    }
+}
@@ -23,7 +23,10 @@ import androidx.navigation.ui.NavigationUI;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.inf.myjavavideo.databinding.ActivityMainBinding;
 import com.inf.myjavavideo.ui.auth.LoginActivity;
+import com.inf.myjavavideo.utils.ImportQueue;
+import com.inf.myjavavideo.utils.MediaStoreObserver;
 import com.inf.myjavavideo.utils.SessionManager;
+import com.inf.myjavavideo.utils.ThumbnailStore;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -77,6 +80,23 @@ public class MainActivity extends AppCompatActivity {
         
         // 请求权限
         checkAndRequestPermissions();
+        
+        // 监听媒体库变化，自动增量同步视频库
+        MediaStoreObserver.getInstance(this).start();
+        
+        // 继续处理上次未完成的导入任务
+        ImportQueue.getInstance(this).resume();
+        
+        // 控制缩略图占用，清理已删除视频留下的文件
+        ThumbnailStore.getInstance(this).maintainAsync();
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (isFinishing()) {
+            MediaStoreObserver.getInstance(this).stop();
+        }
     }
     
     private void checkAndRequestPermissions() {
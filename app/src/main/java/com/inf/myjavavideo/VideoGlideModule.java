@@ -0,0 +1,27 @@
+package com.inf.myjavavideo;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.module.AppGlideModule;
+import com.inf.myjavavideo.utils.ThumbnailCache;
+
+/**
+ * 应用的Glide配置，使用缩略图缓存的内存和磁盘设置
+ */
+@GlideModule
+public class VideoGlideModule extends AppGlideModule {
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        ThumbnailCache.applyOptions(context, builder);
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -1,18 +1,22 @@
 package com.inf.myjavavideo.data;
 
 import android.content.Context;
+import android.database.Cursor;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.inf.myjavavideo.data.dao.ImportJobDao;
 import com.inf.myjavavideo.data.dao.PlaylistDao;
 import com.inf.myjavavideo.data.dao.PlaylistVideoDao;
 import com.inf.myjavavideo.data.dao.SubtitleDao;
 import com.inf.myjavavideo.data.dao.UserDao;
 import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.ImportJob;
 import com.inf.myjavavideo.data.model.Playlist;
 import com.inf.myjavavideo.data.model.PlaylistVideo;
 import com.inf.myjavavideo.data.model.Subtitle;
@@ -22,7 +26,7 @@ import com.inf.myjavavideo.data.model.Video;
 /**
  * 应用程序数据库类
  */
-@Database(entities = {User.class, Video.class, Playlist.class, PlaylistVideo.class, Subtitle.class}, version = 6, exportSchema = false)
+@Database(entities = {User.class, Video.class, Playlist.class, PlaylistVideo.class, Subtitle.class, ImportJob.class}, version = 13, exportSchema = true)
 public abstract class AppDatabase extends RoomDatabase {
     private static final String DATABASE_NAME = "video_player_db";
     private static AppDatabase instance;
@@ -32,6 +36,7 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract PlaylistDao playlistDao();
     public abstract PlaylistVideoDao playlistVideoDao();
     public abstract SubtitleDao subtitleDao();
+    public abstract ImportJobDao importJobDao();
 
     public static synchronized AppDatabase getInstance(Context context) {
         if (instance == null) {
@@ -43,15 +48,96 @@ public abstract class AppDatabase extends RoomDatabase {
                     .addMigrations(MIGRATION_4_5)
                     // 添加从版本5到版本6的迁移策略
                     .addMigrations(MIGRATION_5_6)
-                    // 保留破坏性迁移作为备选方案
-                    .fallbackToDestructiveMigration()
+                    // 添加从版本6到版本7的迁移策略
+                    .addMigrations(MIGRATION_6_7)
+                    // 添加从版本7到版本8的迁移策略
+                    .addMigrations(MIGRATION_7_8)
+                    // 添加从版本8到版本9的迁移策略
+                    .addMigrations(MIGRATION_8_9)
+                    // 添加从版本9到版本10的迁移策略
+                    .addMigrations(MIGRATION_9_10)
+                    // 添加从版本10到版本11的迁移策略
+                    .addMigrations(MIGRATION_10_11)
+                    // 添加从版本11到版本12的迁移策略
+                    .addMigrations(MIGRATION_11_12)
+                    // 添加从版本12到版本13的迁移策略
+                    .addMigrations(MIGRATION_12_13)
+                    // 只有没有迁移策略的早期版本才重建数据库，其余版本缺少迁移时直接报错，不清空用户数据
+                    .fallbackToDestructiveMigrationFrom(1, 2, 3)
+                    // 每次打开时确保播放列表封面的触发器存在，新建和重建的数据库同样适用
+                    .addCallback(new Callback() {
+                        @Override
+                        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                            createPlaylistCoverTriggers(db);
+                            createSearchIndex(db);
+                        }
+
+                        @Override
+                        public void onDestructiveMigration(@NonNull SupportSQLiteDatabase db) {
+                            // 搜索索引不是Room实体，重建数据库时不会被删除，需要一并清空
+                            db.execSQL("DROP TABLE IF EXISTS search_index");
+                            db.execSQL("DROP TABLE IF EXISTS search_pending");
+                        }
+                    })
                     .build();
         }
         return instance;
     }
     
+    // 播放列表成员变化时清空封面路径，由PlaylistCovers在下次显示时重新拼接；
+    // 视频删除时级联删除的关联记录同样会触发
+    private static void createPlaylistCoverTriggers(SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS playlist_cover_insert AFTER INSERT ON playlist_videos " +
+                "BEGIN UPDATE playlists SET thumbnailPath = '' WHERE id = NEW.playlistId; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS playlist_cover_delete AFTER DELETE ON playlist_videos " +
+                "BEGIN UPDATE playlists SET thumbnailPath = '' WHERE id = OLD.playlistId; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS playlist_cover_update " +
+                "AFTER UPDATE OF playlistId, videoId, position ON playlist_videos " +
+                "BEGIN UPDATE playlists SET thumbnailPath = '' WHERE id IN (OLD.playlistId, NEW.playlistId); END");
+    }
+    
+    // 全文搜索索引，由VideoSearch写入和查询
+    // docid = 记录ID * 4 + 类型（0视频标题、1字幕、2播放列表名称），与VideoSearch.KIND_*一致；
+    // 触发器只把变化的docid记入search_pending，分词在Java中完成，搜索前再补齐索引
+    private static void createSearchIndex(SupportSQLiteDatabase database) {
+        boolean exists;
+        try (Cursor cursor = database.query("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'search_index'")) {
+            exists = cursor.moveToFirst();
+        }
+        if (!exists) {
+            database.beginTransaction();
+            try {
+                database.execSQL("CREATE VIRTUAL TABLE search_index USING fts4(" +
+                        "content, ref_id, start_time, notindexed=ref_id, notindexed=start_time)");
+                database.execSQL("CREATE TABLE IF NOT EXISTS search_pending (docid INTEGER PRIMARY KEY NOT NULL)");
+                // 已有的数据全部待索引
+                database.execSQL("INSERT OR IGNORE INTO search_pending SELECT id * 4 FROM videos");
+                database.execSQL("INSERT OR IGNORE INTO search_pending SELECT id * 4 + 1 FROM subtitles");
+                database.execSQL("INSERT OR IGNORE INTO search_pending SELECT id * 4 + 2 FROM playlists");
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        }
+
+        createSearchTriggers(database, "videos", 0, "title");
+        createSearchTriggers(database, "subtitles", 1, "text, start_time, video_id");
+        createSearchTriggers(database, "playlists", 2, "name");
+    }
+
+    private static void createSearchTriggers(SupportSQLiteDatabase database, String table, int kind, String columns) {
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_search_insert AFTER INSERT ON " + table + " " +
+                "BEGIN INSERT OR IGNORE INTO search_pending VALUES (NEW.id * 4 + " + kind + "); END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_search_update AFTER UPDATE OF " + columns +
+                " ON " + table + " " +
+                "BEGIN INSERT OR IGNORE INTO search_pending VALUES (NEW.id * 4 + " + kind + "); END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_search_delete AFTER DELETE ON " + table + " " +
+                "BEGIN DELETE FROM search_index WHERE docid = OLD.id * 4 + " + kind + "; " +
+                "DELETE FROM search_pending WHERE docid = OLD.id * 4 + " + kind + "; END");
+    }
+    
     // 定义从版本4到版本5的迁移策略
-    private static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
         @Override
         public void migrate(SupportSQLiteDatabase database) {
             // 为Video表添加source_type列，默认值为"file"
@@ -63,7 +149,7 @@ public abstract class AppDatabase extends RoomDatabase {
     };
     
     // 定义从版本5到版本6的迁移策略
-    private static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
         @Override
         public void migrate(SupportSQLiteDatabase database) {
             // 处理Schema变更或添加新的字段
@@ -71,4 +157,131 @@ public abstract class AppDatabase extends RoomDatabase {
             database.execSQL("ALTER TABLE playlists ADD COLUMN thumbnailPath TEXT DEFAULT ''");
         }
     };
-} 
\ No newline at end of file
+    
+    // 定义从版本6到版本7的迁移策略
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 为Video表添加media_store_id列，用于媒体库增量同步
+            database.execSQL("ALTER TABLE videos ADD COLUMN media_store_id INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+    
+    // 定义从版本7到版本8的迁移策略
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 为Video表添加技术元数据列
+            database.execSQL("ALTER TABLE videos ADD COLUMN width INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE videos ADD COLUMN height INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE videos ADD COLUMN bitrate INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE videos ADD COLUMN rotation INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE videos ADD COLUMN mime_type TEXT");
+            database.execSQL("ALTER TABLE videos ADD COLUMN frame_rate REAL NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE videos ADD COLUMN metadata_key TEXT");
+        }
+    };
+    
+    // 定义从版本8到版本9的迁移策略
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 添加内容指纹列及索引，用于导入时去重
+            database.execSQL("ALTER TABLE videos ADD COLUMN fingerprint TEXT");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_videos_fingerprint ON videos (fingerprint)");
+        }
+    };
+    
+    // 定义从版本9到版本10的迁移策略
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 添加导入任务表，用于可恢复的后台导入队列
+            database.execSQL("CREATE TABLE IF NOT EXISTS import_jobs (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "uri TEXT, " +
+                    "file_path TEXT, " +
+                    "display_name TEXT, " +
+                    "file_size INTEGER NOT NULL, " +
+                    "status INTEGER NOT NULL, " +
+                    "attempts INTEGER NOT NULL, " +
+                    "error TEXT, " +
+                    "video_id INTEGER NOT NULL, " +
+                    "created_at INTEGER NOT NULL)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_import_jobs_status ON import_jobs (status)");
+        }
+    };
+    
+    // 定义从版本10到版本11的迁移策略
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // path将加上唯一索引，先合并同一路径的重复记录，保留ID最小的一条，
+            // 字幕、播放列表和导入任务改为指向保留的记录，任一重复记录被收藏则保留收藏
+            database.execSQL("CREATE TEMP TABLE video_duplicates AS " +
+                    "SELECT v.id AS duplicate_id, k.keep_id AS keep_id FROM videos v " +
+                    "JOIN (SELECT path, MIN(id) AS keep_id FROM videos WHERE path IS NOT NULL " +
+                    "GROUP BY path HAVING COUNT(*) > 1) k ON v.path = k.path " +
+                    "WHERE v.id != k.keep_id");
+            database.execSQL("UPDATE videos SET is_favorite = 1 WHERE id IN (" +
+                    "SELECT d.keep_id FROM video_duplicates d JOIN videos v ON v.id = d.duplicate_id " +
+                    "WHERE v.is_favorite = 1)");
+            database.execSQL("UPDATE subtitles SET video_id = (" +
+                    "SELECT keep_id FROM video_duplicates WHERE duplicate_id = subtitles.video_id) " +
+                    "WHERE video_id IN (SELECT duplicate_id FROM video_duplicates)");
+            database.execSQL("UPDATE playlist_videos SET videoId = (" +
+                    "SELECT keep_id FROM video_duplicates WHERE duplicate_id = playlist_videos.videoId) " +
+                    "WHERE videoId IN (SELECT duplicate_id FROM video_duplicates)");
+            database.execSQL("UPDATE import_jobs SET video_id = (" +
+                    "SELECT keep_id FROM video_duplicates WHERE duplicate_id = import_jobs.video_id) " +
+                    "WHERE video_id IN (SELECT duplicate_id FROM video_duplicates)");
+            // 合并后同一播放列表中可能出现同一视频两次，只保留第一条
+            database.execSQL("DELETE FROM playlist_videos WHERE videoId IN (SELECT keep_id FROM video_duplicates) " +
+                    "AND id NOT IN (SELECT MIN(id) FROM playlist_videos GROUP BY playlistId, videoId)");
+            database.execSQL("DELETE FROM videos WHERE id IN (SELECT duplicate_id FROM video_duplicates)");
+            database.execSQL("DROP TABLE video_duplicates");
+            
+            // 游标分页按空字符串处理没有标题的视频，统一为''以保证排序与查询条件一致
+            database.execSQL("UPDATE videos SET title = '' WHERE title IS NULL");
+            
+            // 添加列表排序、查重和媒体库同步用的索引
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_videos_path ON videos (path)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_videos_title ON videos (title)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_videos_date_added ON videos (date_added)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_videos_is_favorite_date_added ON videos (is_favorite, date_added)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_videos_media_store_id ON videos (media_store_id)");
+        }
+    };
+
+    // 定义从版本11到版本12的迁移策略
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 原有的连续排序值改为间隔POSITION_GAP的排序值，保持原有顺序，位置相同的按ID排列
+            database.execSQL("CREATE TEMP TABLE playlist_positions AS " +
+                    "SELECT pv.id AS id, " + PlaylistVideo.POSITION_GAP + " * (SELECT COUNT(*) FROM playlist_videos p " +
+                    "WHERE p.playlistId = pv.playlistId AND (p.position < pv.position " +
+                    "OR (p.position = pv.position AND p.id <= pv.id))) AS position " +
+                    "FROM playlist_videos pv");
+            database.execSQL("UPDATE playlist_videos SET position = (" +
+                    "SELECT position FROM playlist_positions WHERE id = playlist_videos.id)");
+            database.execSQL("DROP TABLE playlist_positions");
+            
+            // 按播放列表读取成员和查找相邻项都按排序值，改用联合索引
+            database.execSQL("DROP INDEX IF EXISTS index_playlist_videos_playlistId");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_playlist_videos_playlistId_position " +
+                    "ON playlist_videos (playlistId, position)");
+        }
+    };
+
+    // 定义从版本12到版本13的迁移策略
+    static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 文件夹扫描和导入队列曾以秒保存添加时间，统一换算为毫秒，与其他来源的视频一起排序；
+            // 毫秒时间戳远大于1e11，小于它的非零值都是秒
+            database.execSQL("UPDATE videos SET date_added = date_added * 1000 " +
+                    "WHERE date_added > 0 AND date_added < 100000000000");
+        }
+    };
+}
@@ -0,0 +1,44 @@
+package com.inf.myjavavideo.data.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import com.inf.myjavavideo.data.model.ImportJob;
+
+import java.util.List;
+
+@Dao
+public interface ImportJobDao {
+
+    @Insert
+    long insert(ImportJob job);
+
+    @Update
+    void update(ImportJob job);
+
+    // 按入队顺序取出一批待处理的任务
+    @Query("SELECT * FROM import_jobs WHERE status = 0 ORDER BY id ASC LIMIT :limit")
+    List<ImportJob> getPendingJobs(int limit);
+
+    // 领取任务时同时累加尝试次数，导致进程崩溃的任务不会无限重试
+    @Query("UPDATE import_jobs SET status = 1, attempts = attempts + 1 WHERE id IN (:jobIds)")
+    void markRunning(List<Integer> jobIds);
+
+    // 进程被杀死时正在处理的任务重新放回队列，超过重试次数的标记为失败
+    @Query("UPDATE import_jobs SET status = CASE WHEN attempts >= :maxAttempts THEN 3 ELSE 0 END " +
+            "WHERE status = 1")
+    int resetRunningJobs(int maxAttempts);
+
+    @Query("SELECT COUNT(*) FROM import_jobs WHERE status = :status")
+    int getJobCountByStatus(int status);
+
+    // 同一个URI正在排队时不重复入队
+    @Query("SELECT COUNT(*) FROM import_jobs WHERE uri = :uri AND status IN (0, 1)")
+    int getActiveJobCountForUri(String uri);
+
+    // 队列全部处理完后清理已结束的任务
+    @Query("DELETE FROM import_jobs WHERE status IN (2, 3, 4)")
+    void deleteFinishedJobs();
+}
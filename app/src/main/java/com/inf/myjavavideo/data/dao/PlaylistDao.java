@@ -1,5 +1,6 @@
 package com.inf.myjavavideo.data.dao;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
@@ -7,6 +8,7 @@ import androidx.room.Query;
 import androidx.room.Update;
 
 import com.inf.myjavavideo.data.model.Playlist;
+import com.inf.myjavavideo.data.model.PlaylistSummary;
 
 import java.util.List;
 
@@ -21,12 +23,36 @@ public interface PlaylistDao {
     @Delete
     void delete(Playlist playlist);
 
+    @Query("UPDATE playlists SET thumbnailPath = :thumbnailPath WHERE id = :id")
+    void updateThumbnailPath(int id, String thumbnailPath);
+
+    // 视频缩略图更新后，包含该视频的播放列表封面需要重新拼接
+    @Query("UPDATE playlists SET thumbnailPath = '' WHERE id IN (SELECT playlistId FROM playlist_videos WHERE videoId = :videoId)")
+    void clearCoversForVideo(int videoId);
+
     @Query("SELECT * FROM playlists WHERE id = :id")
     Playlist getPlaylistById(int id);
 
     @Query("SELECT * FROM playlists WHERE userId = :userId")
     List<Playlist> getPlaylistsByUserId(int userId);
 
-    @Query("SELECT * FROM playlists WHERE userId = :userId AND name LIKE '%' || :query || '%'")
-    List<Playlist> searchPlaylistsByUserId(int userId, String query);
+    // 播放列表的列表一次查出视频数量、总时长和封面，不再逐个播放列表查询；
+    // 播放列表、成员或视频变化时自动重新查询
+    @Query("SELECT p.id, p.name, p.thumbnailPath, " +
+            "COUNT(pv.id) AS video_count, COALESCE(SUM(v.duration), 0) AS total_duration, " +
+            "(SELECT fv.thumbnailPath FROM playlist_videos fpv INNER JOIN videos fv ON fv.id = fpv.videoId " +
+            "WHERE fpv.playlistId = p.id AND fv.thumbnailPath IS NOT NULL AND fv.thumbnailPath != '' " +
+            "ORDER BY fpv.position LIMIT 1) AS first_thumbnail_path " +
+            "FROM playlists p " +
+            "LEFT JOIN playlist_videos pv ON pv.playlistId = p.id " +
+            "LEFT JOIN videos v ON v.id = pv.videoId " +
+            "WHERE p.userId = :userId GROUP BY p.id ORDER BY p.id")
+    LiveData<List<PlaylistSummary>> observePlaylistSummaries(int userId);
+
+    @Query("DELETE FROM playlists WHERE id = :id")
+    void deleteById(int id);
+
+    // 搜索结果按ID读取播放列表，只返回该用户的
+    @Query("SELECT * FROM playlists WHERE userId = :userId AND id IN (:ids)")
+    List<Playlist> getPlaylistsByIdsForUser(int userId, List<Integer> ids);
 } 
\ No newline at end of file
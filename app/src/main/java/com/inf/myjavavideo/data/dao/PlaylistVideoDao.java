@@ -10,7 +10,12 @@ import androidx.room.Update;
 import com.inf.myjavavideo.data.model.PlaylistVideo;
 import com.inf.myjavavideo.data.model.Video;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Dao
 public interface PlaylistVideoDao {
@@ -26,19 +31,143 @@ public interface PlaylistVideoDao {
     @Query("DELETE FROM playlist_videos WHERE playlistId = :playlistId AND videoId = :videoId")
     void deleteByPlaylistAndVideo(int playlistId, int videoId);
 
-    @Query("SELECT * FROM playlist_videos WHERE playlistId = :playlistId ORDER BY position")
+    @Query("SELECT * FROM playlist_videos WHERE playlistId = :playlistId ORDER BY position, id")
     List<PlaylistVideo> getPlaylistVideos(int playlistId);
 
     @Transaction
-    @Query("SELECT v.* FROM videos v INNER JOIN playlist_videos pv ON v.id = pv.videoId WHERE pv.playlistId = :playlistId ORDER BY pv.position")
+    @Query("SELECT v.* FROM videos v INNER JOIN playlist_videos pv ON v.id = pv.videoId WHERE pv.playlistId = :playlistId ORDER BY pv.position, pv.id")
     List<Video> getVideosForPlaylist(int playlistId);
 
+    // 播放列表封面使用的前几个成员缩略图
+    @Query("SELECT v.thumbnailPath FROM videos v INNER JOIN playlist_videos pv ON v.id = pv.videoId " +
+            "WHERE pv.playlistId = :playlistId AND v.thumbnailPath IS NOT NULL AND v.thumbnailPath != '' " +
+            "ORDER BY pv.position, pv.id LIMIT :limit")
+    List<String> getCoverThumbnailPaths(int playlistId, int limit);
+
     @Query("SELECT COUNT(*) FROM playlist_videos WHERE playlistId = :playlistId")
     int getVideoCountForPlaylist(int playlistId);
 
+    // 空播放列表返回0
     @Query("SELECT MAX(position) FROM playlist_videos WHERE playlistId = :playlistId")
     int getMaxPositionForPlaylist(int playlistId);
 
+    @Query("SELECT position FROM playlist_videos WHERE playlistId = :playlistId AND videoId = :videoId LIMIT 1")
+    Integer getPosition(int playlistId, int videoId);
+
+    @Query("UPDATE playlist_videos SET position = :position WHERE playlistId = :playlistId AND videoId = :videoId")
+    int updatePosition(int playlistId, int videoId, int position);
+
+    @Query("UPDATE playlist_videos SET position = :position WHERE id = :id")
+    void updatePositionById(int id, int position);
+
+    /**
+     * 把视频添加到播放列表末尾，排序值超出范围时先重新分配
+     */
+    @Transaction
+    default long appendVideo(int playlistId, int videoId) {
+        int max = getMaxPositionForPlaylist(playlistId);
+        if (max > Integer.MAX_VALUE - PlaylistVideo.POSITION_GAP) {
+            rebalance(playlistId);
+            max = getMaxPositionForPlaylist(playlistId);
+        }
+        return insert(new PlaylistVideo(playlistId, videoId, max + PlaylistVideo.POSITION_GAP));
+    }
+
+    /**
+     * 把视频移动到两个视频之间，只改写被移动的一行；
+     * 两者之间已没有空位时先重新分配整个播放列表的排序值
+     * @param previousVideoId 移动后的前一个视频，移到开头时为-1
+     * @param nextVideoId 移动后的后一个视频，移到末尾时为-1
+     * @return 是否已保存；移动的视频或相邻视频已不在播放列表中时返回false
+     */
+    @Transaction
+    default boolean moveVideo(int playlistId, int videoId, int previousVideoId, int nextVideoId) {
+        Integer lower = previousVideoId != -1 ? getPosition(playlistId, previousVideoId) : null;
+        Integer upper = nextVideoId != -1 ? getPosition(playlistId, nextVideoId) : null;
+        if ((previousVideoId != -1 && lower == null) || (nextVideoId != -1 && upper == null)) {
+            return false;
+        }
+
+        Integer position = positionBetween(lower, upper);
+        if (position == null) {
+            rebalance(playlistId);
+            lower = previousVideoId != -1 ? getPosition(playlistId, previousVideoId) : null;
+            upper = nextVideoId != -1 ? getPosition(playlistId, nextVideoId) : null;
+            position = positionBetween(lower, upper);
+        }
+        return position != null && updatePosition(playlistId, videoId, position) > 0;
+    }
+
+    /**
+     * 按给定顺序重新排列播放列表，在一个事务中写入，排序值与rebalance一样按POSITION_GAP间隔分配；
+     * 不在列表中的成员（例如刚被添加的视频）保持原有先后顺序排在后面，排序值未变的行不写入
+     * @param orderedVideoIds 按新顺序排列的视频ID
+     */
+    @Transaction
+    default void moveAll(int playlistId, List<Integer> orderedVideoIds) {
+        List<PlaylistVideo> items = getPlaylistVideos(playlistId);
+        Map<Integer, PlaylistVideo> itemsByVideoId = new HashMap<>();
+        for (PlaylistVideo item : items) {
+            itemsByVideoId.putIfAbsent(item.getVideoId(), item);
+        }
+
+        List<PlaylistVideo> ordered = new ArrayList<>(items.size());
+        Set<Integer> placedIds = new HashSet<>();
+        for (Integer videoId : orderedVideoIds) {
+            PlaylistVideo item = itemsByVideoId.get(videoId);
+            if (item != null && placedIds.add(item.getId())) {
+                ordered.add(item);
+            }
+        }
+        for (PlaylistVideo item : items) {
+            if (placedIds.add(item.getId())) {
+                ordered.add(item);
+            }
+        }
+
+        for (int i = 0; i < ordered.size(); i++) {
+            int position = (i + 1) * PlaylistVideo.POSITION_GAP;
+            if (ordered.get(i).getPosition() != position) {
+                updatePositionById(ordered.get(i).getId(), position);
+            }
+        }
+    }
+
+    /**
+     * 保持现有顺序，把排序值重新分配为POSITION_GAP的整数倍
+     */
+    @Transaction
+    default void rebalance(int playlistId) {
+        List<PlaylistVideo> items = getPlaylistVideos(playlistId);
+        for (int i = 0; i < items.size(); i++) {
+            int position = (i + 1) * PlaylistVideo.POSITION_GAP;
+            if (items.get(i).getPosition() != position) {
+                updatePositionById(items.get(i).getId(), position);
+            }
+        }
+    }
+
+    // 两个排序值之间可用的排序值，为null表示没有前一个或后一个；没有空位时返回null
+    default Integer positionBetween(Integer lower, Integer upper) {
+        long position;
+        if (lower == null && upper == null) {
+            position = PlaylistVideo.POSITION_GAP;
+        } else if (lower == null) {
+            position = (long) upper - PlaylistVideo.POSITION_GAP;
+        } else if (upper == null) {
+            position = (long) lower + PlaylistVideo.POSITION_GAP;
+        } else {
+            position = ((long) lower + upper) / 2;
+            if (position <= lower || position >= upper) {
+                return null;
+            }
+        }
+        if (position < Integer.MIN_VALUE || position > Integer.MAX_VALUE) {
+            return null;
+        }
+        return (int) position;
+    }
+
     @Query("SELECT COUNT(*) FROM playlist_videos WHERE playlistId = :playlistId")
     int getPlaylistVideoCount(int playlistId);
 
@@ -1,5 +1,6 @@
 package com.inf.myjavavideo.data.dao;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
@@ -35,6 +36,10 @@ public interface SubtitleDao {
     @Query("SELECT * FROM subtitles WHERE video_id = :videoId ORDER BY start_time ASC")
     List<Subtitle> getSubtitlesForVideo(int videoId);
     
+    // 字幕增删改后自动重新查询
+    @Query("SELECT * FROM subtitles WHERE video_id = :videoId ORDER BY start_time ASC")
+    LiveData<List<Subtitle>> observeSubtitlesForVideo(int videoId);
+    
     @Query("SELECT * FROM subtitles WHERE video_id = :videoId AND " +
             "start_time <= :currentTime AND end_time >= :currentTime " +
             "ORDER BY start_time DESC LIMIT 1")
@@ -1,61 +1,321 @@
 package com.inf.myjavavideo.data.dao;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.inf.myjavavideo.data.model.Video;
+import com.inf.myjavavideo.data.model.VideoContentKey;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Dao
 public interface VideoDao {
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    // 列表、导入和同步的常用查询，VideoDaoQueryPlanTest对同一组常量执行EXPLAIN QUERY PLAN，
+    // 检查它们都走索引；新增或修改这些查询时在测试中补充对应的用例
+    String TITLE_FIRST_PAGE = "SELECT * FROM videos ORDER BY title ASC, id ASC LIMIT :limit";
+    String TITLE_NEXT_PAGE = "SELECT * FROM videos WHERE title >= :title AND (title > :title OR id > :videoId) " +
+            "ORDER BY title ASC, id ASC LIMIT :limit";
+    String DATE_ADDED_FIRST_PAGE = "SELECT * FROM videos ORDER BY date_added DESC, id DESC LIMIT :limit";
+    String DATE_ADDED_NEXT_PAGE = "SELECT * FROM videos " +
+            "WHERE date_added <= :dateAdded AND (date_added < :dateAdded OR id < :videoId) " +
+            "ORDER BY date_added DESC, id DESC LIMIT :limit";
+    String FAVORITE_FIRST_PAGE = "SELECT * FROM videos WHERE is_favorite = 1 " +
+            "ORDER BY date_added DESC, id DESC LIMIT :limit";
+    String FAVORITE_NEXT_PAGE = "SELECT * FROM videos WHERE is_favorite = 1 " +
+            "AND date_added <= :dateAdded AND (date_added < :dateAdded OR id < :videoId) " +
+            "ORDER BY date_added DESC, id DESC LIMIT :limit";
+    String NEXT_BY_ID = "SELECT * FROM videos WHERE id > :videoId ORDER BY id ASC LIMIT 1";
+    String PREVIOUS_BY_ID = "SELECT * FROM videos WHERE id < :videoId ORDER BY id DESC LIMIT 1";
+    String BY_IDS = "SELECT * FROM videos WHERE id IN (:videoIds)";
+    String BY_FINGERPRINT = "SELECT * FROM videos WHERE fingerprint = :fingerprint LIMIT 1";
+    String BY_PATH = "SELECT * FROM videos WHERE path = :path";
+    String BY_PATH_RANGE = "SELECT * FROM videos WHERE path >= :lower AND path < :upper";
+    String BY_MEDIA_STORE_ID = "SELECT * FROM videos WHERE media_store_id = :mediaStoreId LIMIT 1";
+    String SYNCED_MEDIA_STORE_IDS = "SELECT media_store_id FROM videos " +
+            "WHERE media_store_id > 0 AND source_type = 'media_store'";
+    String BY_MEDIA_STORE_IDS = "SELECT * FROM videos WHERE media_store_id IN (:mediaStoreIds)";
+    String DELETE_SYNCED_BY_MEDIA_STORE_IDS = "DELETE FROM videos " +
+            "WHERE media_store_id IN (:mediaStoreIds) AND source_type = 'media_store'";
+    String BY_PATHS = "SELECT * FROM videos WHERE path IN (:paths)";
+
+    // path有唯一索引，冲突时报错而不是替换，REPLACE会删除旧行并级联删除它的播放列表和字幕；
+    // 可能与已有路径冲突的写入使用upsert
+    @Insert(onConflict = OnConflictStrategy.ABORT)
     long insert(Video video);
 
+    // 批量插入，在一个事务内完成
+    @Insert(onConflict = OnConflictStrategy.ABORT)
+    List<Long> insertAll(List<Video> videos);
+
     @Update
     void update(Video video);
 
+    // 批量更新，在一个事务内完成
+    @Update
+    void updateAll(List<Video> videos);
+
     @Delete
     void delete(Video video);
 
     @Query("SELECT * FROM videos WHERE id = :videoId")
     Video getVideoById(int videoId);
 
-    @Query("SELECT * FROM videos ORDER BY title ASC")
-    List<Video> getAllVideos();
+    // 以下为游标分页查询，后续页从上一页最后一条记录的排序键之后继续，不使用OFFSET；
+    // 条件先写成对排序键的范围，使查询能从索引中的位置直接开始
+    @Query(TITLE_FIRST_PAGE)
+    List<Video> getVideosByTitle(int limit);
+
+    @Query(TITLE_NEXT_PAGE)
+    List<Video> getVideosByTitleAfter(String title, int videoId, int limit);
+
+    @Query(DATE_ADDED_FIRST_PAGE)
+    List<Video> getVideosByDateAddedDesc(int limit);
+
+    @Query(DATE_ADDED_NEXT_PAGE)
+    List<Video> getVideosByDateAddedBefore(long dateAdded, int videoId, int limit);
+
+    // 最近添加的视频，videos表变化时自动重新查询
+    @Query(DATE_ADDED_FIRST_PAGE)
+    LiveData<List<Video>> observeRecentVideos(int limit);
 
-    @Query("SELECT * FROM videos ORDER BY date_added DESC")
-    List<Video> getVideosByDateAddedDesc();
+    @Query(FAVORITE_FIRST_PAGE)
+    List<Video> getFavoriteVideos(int limit);
 
-    @Query("SELECT * FROM videos WHERE id > :videoId ORDER BY id ASC LIMIT 1")
+    @Query(FAVORITE_NEXT_PAGE)
+    List<Video> getFavoriteVideosBefore(long dateAdded, int videoId, int limit);
+
+    @Query(NEXT_BY_ID)
     Video getNextVideoAfter(int videoId);
 
-    @Query("SELECT * FROM videos WHERE id < :videoId ORDER BY id DESC LIMIT 1")
+    @Query(PREVIOUS_BY_ID)
     Video getPreviousVideoBefore(int videoId);
 
     @Query("UPDATE videos SET last_played_position = :position WHERE id = :videoId")
     void updateLastPlayedPosition(int videoId, long position);
 
-    @Query("SELECT * FROM videos WHERE title LIKE '%' || :query || '%'")
-    List<Video> searchVideos(String query);
+    // 批量写入播放进度，在一个事务内完成
+    @Transaction
+    default void updateLastPlayedPositions(Map<Integer, Long> positions) {
+        for (Map.Entry<Integer, Long> entry : positions.entrySet()) {
+            updateLastPlayedPosition(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // 搜索结果按ID读取视频，调用方需分批传入
+    @Query(BY_IDS)
+    List<Video> getVideosByIds(List<Integer> videoIds);
 
     @Query("SELECT COUNT(*) FROM videos")
     int getVideoCount();
 
-    @Query("SELECT * FROM videos WHERE is_favorite = 1")
-    List<Video> getFavoriteVideos();
+    @Query("UPDATE videos SET thumbnailPath = :thumbnailPath WHERE id = :videoId")
+    void updateThumbnailPath(int videoId, String thumbnailPath);
+
+    @Query("UPDATE videos SET duration = CASE WHEN :duration > 0 THEN :duration ELSE duration END, " +
+            "width = :width, height = :height, bitrate = :bitrate, rotation = :rotation, " +
+            "mime_type = :mimeType, frame_rate = :frameRate, metadata_key = :metadataKey WHERE id = :videoId")
+    void updateMetadata(int videoId, long duration, int width, int height, int bitrate, int rotation,
+                        String mimeType, float frameRate, String metadataKey);
+
+    @Query("UPDATE videos SET fingerprint = :fingerprint WHERE id = :videoId")
+    void updateFingerprint(int videoId, String fingerprint);
+
+    // 按内容指纹查找，走fingerprint索引
+    @Query(BY_FINGERPRINT)
+    Video getVideoByFingerprint(String fingerprint);
 
     @Query("UPDATE videos SET is_favorite = :isFavorite WHERE id = :videoId")
     void updateFavoriteStatus(int videoId, boolean isFavorite);
 
-    @Query("SELECT * FROM videos WHERE path = :path")
+    @Query(BY_PATH)
     Video getVideoByPath(String path);
 
-    // 根据路径模式查询视频
-    @Query("SELECT * FROM videos WHERE path LIKE :pathPattern")
-    List<Video> getVideosByPathPattern(String pathPattern);
-} 
\ No newline at end of file
+    // 路径在[lower, upper)范围内的视频，用于前缀查询
+    @Query(BY_PATH_RANGE)
+    List<Video> getVideosByPathRange(String lower, String upper);
+
+    /**
+     * 查询路径以指定前缀开头的视频
+     * 转换为范围查询以使用path索引，LIKE默认不区分大小写，无法使用索引
+     */
+    default List<Video> getVideosByPathPrefix(String prefix) {
+        int last = prefix.length() - 1;
+        String upper = prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+        return getVideosByPathRange(prefix, upper);
+    }
+
+    @Query(BY_MEDIA_STORE_ID)
+    Video getVideoByMediaStoreId(long mediaStoreId);
+
+    // 获取所有由媒体库同步创建的视频的媒体库ID，source_type与MediaStoreSync.SOURCE_TYPE一致
+    @Query(SYNCED_MEDIA_STORE_IDS)
+    List<Long> getSyncedMediaStoreIds();
+
+    @Query(BY_MEDIA_STORE_IDS)
+    List<Video> getVideosByMediaStoreIds(List<Long> mediaStoreIds);
+
+    // 只删除由同步创建的视频，用户导入的视频即使带有媒体库ID也保留
+    @Query(DELETE_SYNCED_BY_MEDIA_STORE_IDS)
+    void deleteSyncedByMediaStoreIds(List<Long> mediaStoreIds);
+
+    @Query(BY_PATHS)
+    List<Video> getVideosByPaths(List<String> paths);
+
+    // 缩略图存储清理孤立文件时使用
+    @Query("SELECT path, metadata_key FROM videos")
+    List<VideoContentKey> getAllContentKeys();
+
+    @Query("SELECT thumbnailPath FROM videos WHERE thumbnailPath IS NOT NULL AND thumbnailPath != ''")
+    List<String> getAllThumbnailPaths();
+
+    /**
+     * 按路径插入或更新单个视频
+     * @return 视频对应的数据库ID
+     */
+    default long upsert(Video video) {
+        return upsertAll(Collections.singletonList(video)).get(0);
+    }
+
+    /**
+     * 批量插入或更新视频，在一个事务内完成
+     * 依次按媒体库ID、路径、内容指纹匹配已有记录；已存在的视频保留收藏、播放进度和添加时间等用户数据，
+     * 传入的视频没有的技术元数据、指纹和缩略图沿用已有记录的值；
+     * 匹配时保留已有记录的路径，与同步或先前导入写入的路径一致
+     * @return 每个视频对应的数据库ID，顺序与传入列表一致，同一路径或同一内容出现多次时ID相同
+     */
+    @Transaction
+    default List<Long> upsertAll(List<Video> videos) {
+        // 同一路径只写入第一条，其余在最后沿用它的ID；
+        // 合并已有记录时可能改写传入视频的路径，先记下原始路径
+        List<String> inputPaths = new ArrayList<>();
+        Map<String, Video> uniqueByPath = new LinkedHashMap<>();
+        for (Video video : videos) {
+            inputPaths.add(video.getPath());
+            if (!uniqueByPath.containsKey(video.getPath())) {
+                uniqueByPath.put(video.getPath(), video);
+            }
+        }
+
+        // SQLite单条语句的参数数量有限，分批查询已存在的记录
+        List<String> paths = new ArrayList<>(uniqueByPath.keySet());
+        List<Long> mediaStoreIds = new ArrayList<>();
+        for (Video video : uniqueByPath.values()) {
+            if (video.getMediaStoreId() > 0) {
+                mediaStoreIds.add(video.getMediaStoreId());
+            }
+        }
+        Map<String, Video> existingByPath = new HashMap<>();
+        for (int i = 0; i < paths.size(); i += 500) {
+            for (Video existing : getVideosByPaths(paths.subList(i, Math.min(i + 500, paths.size())))) {
+                existingByPath.put(existing.getPath(), existing);
+            }
+        }
+        Map<Long, Video> existingByMediaStoreId = new HashMap<>();
+        for (int i = 0; i < mediaStoreIds.size(); i += 500) {
+            for (Video existing : getVideosByMediaStoreIds(
+                    mediaStoreIds.subList(i, Math.min(i + 500, mediaStoreIds.size())))) {
+                existingByMediaStoreId.put(existing.getMediaStoreId(), existing);
+            }
+        }
+
+        List<Video> toInsert = new ArrayList<>();
+        List<Video> toUpdate = new ArrayList<>();
+        // 每个路径最终写入的视频，匹配到同一记录或同一内容的输入共用一条
+        Map<String, Video> targetByPath = new HashMap<>();
+        // 已匹配的记录，防止不同路径的两条输入更新同一行
+        Map<Integer, Video> matched = new HashMap<>();
+        // 本次新增视频的指纹，同一内容只插入一次
+        Map<String, Video> insertedByFingerprint = new HashMap<>();
+        for (Map.Entry<String, Video> entry : uniqueByPath.entrySet()) {
+            Video video = entry.getValue();
+            String fingerprint = video.getFingerprint();
+            Video existing = video.getMediaStoreId() > 0 ? existingByMediaStoreId.get(video.getMediaStoreId()) : null;
+            if (existing == null) {
+                existing = existingByPath.get(video.getPath());
+            }
+            if (existing == null && fingerprint != null) {
+                Video inserted = insertedByFingerprint.get(fingerprint);
+                if (inserted != null) {
+                    targetByPath.put(entry.getKey(), inserted);
+                    continue;
+                }
+                existing = getVideoByFingerprint(fingerprint);
+            }
+
+            if (existing == null) {
+                toInsert.add(video);
+                if (fingerprint != null) {
+                    insertedByFingerprint.put(fingerprint, video);
+                }
+                targetByPath.put(entry.getKey(), video);
+            } else if (matched.containsKey(existing.getId())) {
+                targetByPath.put(entry.getKey(), matched.get(existing.getId()));
+            } else {
+                matched.put(existing.getId(), video);
+                mergeExisting(video, existing);
+                toUpdate.add(video);
+                targetByPath.put(entry.getKey(), video);
+            }
+        }
+
+        if (!toUpdate.isEmpty()) {
+            updateAll(toUpdate);
+        }
+        if (!toInsert.isEmpty()) {
+            List<Long> insertedIds = insertAll(toInsert);
+            for (int i = 0; i < toInsert.size(); i++) {
+                toInsert.get(i).setId(insertedIds.get(i).intValue());
+            }
+        }
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < videos.size(); i++) {
+            Video video = videos.get(i);
+            video.setId(targetByPath.get(inputPaths.get(i)).getId());
+            ids.add((long) video.getId());
+        }
+        return ids;
+    }
+
+    // 把已有记录的用户数据和传入视频缺少的字段合并到传入视频上
+    default void mergeExisting(Video video, Video existing) {
+        video.setId(existing.getId());
+        video.setPath(existing.getPath());
+        video.setSourceType(existing.getSourceType());
+        video.setFavorite(existing.isFavorite());
+        video.setLastPlayedPosition(existing.getLastPlayedPosition());
+        video.setDateAdded(existing.getDateAdded());
+        if (video.getThumbnailPath() == null || video.getThumbnailPath().isEmpty()) {
+            video.setThumbnailPath(existing.getThumbnailPath());
+        }
+        if (video.getMediaStoreId() == 0) {
+            video.setMediaStoreId(existing.getMediaStoreId());
+        }
+        if (video.getDuration() <= 0) {
+            video.setDuration(existing.getDuration());
+        }
+        if (video.getMetadataKey() == null) {
+            video.setWidth(existing.getWidth());
+            video.setHeight(existing.getHeight());
+            video.setBitrate(existing.getBitrate());
+            video.setRotation(existing.getRotation());
+            video.setMimeType(existing.getMimeType());
+            video.setFrameRate(existing.getFrameRate());
+            video.setMetadataKey(existing.getMetadataKey());
+        }
+        if (video.getFingerprint() == null) {
+            video.setFingerprint(existing.getFingerprint());
+        }
+    }
+} 
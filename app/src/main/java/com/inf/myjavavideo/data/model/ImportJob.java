@@ -0,0 +1,131 @@
+package com.inf.myjavavideo.data.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * 导入任务实体类，记录待导入的视频，进程被杀死后可以继续处理
+ */
+@Entity(tableName = "import_jobs",
+        indices = {@Index("status")})
+public class ImportJob {
+
+    // 任务状态
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_RUNNING = 1;
+    public static final int STATUS_DONE = 2;
+    public static final int STATUS_FAILED = 3;
+    public static final int STATUS_DUPLICATE = 4;
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    private String uri;             // 选择器返回的URI字符串
+
+    @ColumnInfo(name = "file_path")
+    private String filePath;        // 文件浏览器返回的真实路径，可为空
+
+    @ColumnInfo(name = "display_name")
+    private String displayName;
+
+    @ColumnInfo(name = "file_size")
+    private long fileSize;
+
+    private int status;
+
+    private int attempts;           // 已尝试次数
+
+    private String error;           // 最后一次失败原因
+
+    @ColumnInfo(name = "video_id")
+    private int videoId;            // 导入成功或重复时对应的视频ID
+
+    @ColumnInfo(name = "created_at")
+    private long createdAt;
+
+    public ImportJob() {
+        // 默认构造函数，Room需要
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public int getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(int videoId) {
+        this.videoId = videoId;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
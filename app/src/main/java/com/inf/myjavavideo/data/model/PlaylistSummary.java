@@ -0,0 +1,73 @@
+package com.inf.myjavavideo.data.model;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * 播放列表摘要，由PlaylistDao.observePlaylistSummaries一次查询得到，用于显示播放列表的列表
+ */
+public class PlaylistSummary {
+    private int id;
+
+    private String name;
+
+    // 拼接好的封面路径，需要重新拼接时为空
+    private String thumbnailPath;
+
+    // 第一个有缩略图的成员视频的缩略图，封面拼接完成前代替显示
+    @ColumnInfo(name = "first_thumbnail_path")
+    private String firstThumbnailPath;
+
+    @ColumnInfo(name = "video_count")
+    private int videoCount;
+
+    @ColumnInfo(name = "total_duration")
+    private long totalDuration; // 所有视频的总时长（毫秒）
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getThumbnailPath() {
+        return thumbnailPath;
+    }
+
+    public void setThumbnailPath(String thumbnailPath) {
+        this.thumbnailPath = thumbnailPath;
+    }
+
+    public String getFirstThumbnailPath() {
+        return firstThumbnailPath;
+    }
+
+    public void setFirstThumbnailPath(String firstThumbnailPath) {
+        this.firstThumbnailPath = firstThumbnailPath;
+    }
+
+    public int getVideoCount() {
+        return videoCount;
+    }
+
+    public void setVideoCount(int videoCount) {
+        this.videoCount = videoCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+}
@@ -21,16 +21,19 @@ import androidx.room.PrimaryKey;
                         onDelete = ForeignKey.CASCADE)
         },
         indices = {
-                @Index("playlistId"),
+                @Index({"playlistId", "position"}),
                 @Index("videoId")
         })
 public class PlaylistVideo {
+    // 相邻两项排序值的默认间隔，移动时取前后两项的中间值，只需改写被移动的一行
+    public static final int POSITION_GAP = 1024;
+
     @PrimaryKey(autoGenerate = true)
     private int id;
     
     private int playlistId;
     private int videoId;
-    private int position; // 在播放列表中的位置
+    private int position; // 排序值，按升序排列，不要求连续
 
     public PlaylistVideo() {
     }
@@ -3,6 +3,7 @@ package com.inf.myjavavideo.data.model;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import java.io.Serializable;
@@ -10,7 +11,17 @@ import java.io.Serializable;
 /**
  * 视频实体类，用于存储视频信息
  */
-@Entity(tableName = "videos")
+@Entity(tableName = "videos",
+        indices = {
+                @Index("fingerprint"),
+                // 导入和同步时按路径查重，同一路径只保存一条
+                @Index(value = "path", unique = true),
+                // 列表排序和分页用，索引末尾隐含id，可直接满足"排序键, id"的顺序
+                @Index("title"),
+                @Index("date_added"),
+                @Index({"is_favorite", "date_added"}),
+                @Index("media_store_id")
+        })
 public class Video implements Serializable {
     @PrimaryKey(autoGenerate = true)
     private int id;
@@ -38,6 +49,37 @@ public class Video implements Serializable {
     @ColumnInfo(name = "source_type")
     private String sourceType;
     
+    // 对应系统媒体库中的_ID，非媒体库同步的视频为0
+    @ColumnInfo(name = "media_store_id")
+    private long mediaStoreId;
+    
+    // 技术元数据，由VideoMetadataExtractor一次读取
+    @ColumnInfo(name = "width")
+    private int width;
+    
+    @ColumnInfo(name = "height")
+    private int height;
+    
+    @ColumnInfo(name = "bitrate")
+    private int bitrate;
+    
+    @ColumnInfo(name = "rotation")
+    private int rotation;
+    
+    @ColumnInfo(name = "mime_type")
+    private String mimeType;
+    
+    @ColumnInfo(name = "frame_rate")
+    private float frameRate;
+    
+    // 读取元数据时文件的"大小:修改时间"，未变化时不再重复读取
+    @ColumnInfo(name = "metadata_key")
+    private String metadataKey;
+    
+    // 内容指纹，用于识别通过不同路径导入的同一视频
+    @ColumnInfo(name = "fingerprint")
+    private String fingerprint;
+    
     public Video() {
     }
     
@@ -148,6 +190,78 @@ public class Video implements Serializable {
         this.sourceType = sourceType;
     }
 
+    public long getMediaStoreId() {
+        return mediaStoreId;
+    }
+
+    public void setMediaStoreId(long mediaStoreId) {
+        this.mediaStoreId = mediaStoreId;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    public void setBitrate(int bitrate) {
+        this.bitrate = bitrate;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public void setRotation(int rotation) {
+        this.rotation = rotation;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public float getFrameRate() {
+        return frameRate;
+    }
+
+    public void setFrameRate(float frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    public String getMetadataKey() {
+        return metadataKey;
+    }
+
+    public void setMetadataKey(String metadataKey) {
+        this.metadataKey = metadataKey;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
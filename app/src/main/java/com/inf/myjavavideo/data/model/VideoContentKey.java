@@ -0,0 +1,30 @@
+package com.inf.myjavavideo.data.model;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * 视频的路径和"大小:修改时间"标识，由VideoDao.getAllContentKeys查询得到，
+ * 缩略图存储清理孤立的拖动预览图时用来还原文件名
+ */
+public class VideoContentKey {
+    private String path;
+
+    @ColumnInfo(name = "metadata_key")
+    private String metadataKey;
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getMetadataKey() {
+        return metadataKey;
+    }
+
+    public void setMetadataKey(String metadataKey) {
+        this.metadataKey = metadataKey;
+    }
+}
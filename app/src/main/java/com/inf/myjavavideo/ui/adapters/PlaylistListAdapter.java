@@ -0,0 +1,70 @@
+package com.inf.myjavavideo.ui.adapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.inf.myjavavideo.R;
+import com.inf.myjavavideo.data.model.PlaylistSummary;
+import com.inf.myjavavideo.utils.MediaStoreHelper;
+import com.inf.myjavavideo.utils.ThumbnailCache;
+
+import java.util.List;
+
+/**
+ * 播放列表的列表适配器
+ * 绑定PlaylistSummary，视频数量、总时长和封面路径都在查询时得到，绑定时只读取内存中的数据
+ */
+public class PlaylistListAdapter extends ArrayAdapter<PlaylistSummary> {
+
+    public PlaylistListAdapter(Context context, List<PlaylistSummary> playlists) {
+        super(context, R.layout.item_playlist, playlists);
+    }
+
+    /**
+     * 封面重新拼接完成后更新对应的行
+     */
+    public void onCoverReady(int playlistId, String coverPath) {
+        for (int i = 0; i < getCount(); i++) {
+            PlaylistSummary playlist = getItem(i);
+            if (playlist != null && playlist.getId() == playlistId) {
+                playlist.setThumbnailPath(coverPath);
+                notifyDataSetChanged();
+                return;
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
+        if (convertView == null) {
+            convertView = LayoutInflater.from(getContext()).inflate(R.layout.item_playlist, parent, false);
+        }
+
+        TextView nameTextView = convertView.findViewById(R.id.text_playlist_name);
+        TextView countTextView = convertView.findViewById(R.id.text_video_count);
+        ImageView thumbnailImageView = convertView.findViewById(R.id.image_playlist_thumbnail);
+
+        PlaylistSummary playlist = getItem(position);
+        if (playlist != null) {
+            nameTextView.setText(playlist.getName());
+            String countText = playlist.getVideoCount() + " 个视频";
+            if (playlist.getTotalDuration() > 0) {
+                countText += " · " + MediaStoreHelper.formatDuration(playlist.getTotalDuration());
+            }
+            countTextView.setText(countText);
+            ThumbnailCache.loadFile(thumbnailImageView, playlist.getThumbnailPath(),
+                    ThumbnailCache.COVER, R.drawable.ic_video_placeholder);
+        }
+
+        return convertView;
+    }
+}
@@ -0,0 +1,70 @@
+package com.inf.myjavavideo.ui.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * 按滚动方向预取缩略图
+ * 滚动时提前为即将进入屏幕的几行加载缩略图，快速滑动时图片不会延迟出现
+ */
+public class ThumbnailPrefetcher extends RecyclerView.OnScrollListener {
+    // 提前预取的行数
+    private static final int PREFETCH_ROWS = 3;
+
+    private final PrefetchSource source;
+    private int lastFirstVisible = RecyclerView.NO_POSITION;
+    private int lastLastVisible = RecyclerView.NO_POSITION;
+
+    /**
+     * 由适配器实现，为指定位置的条目预取缩略图
+     */
+    public interface PrefetchSource {
+        void prefetchItem(int position);
+
+        int getItemCount();
+    }
+
+    public ThumbnailPrefetcher(PrefetchSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager) || (dx == 0 && dy == 0)) {
+            return;
+        }
+
+        LinearLayoutManager linearLayoutManager = (LinearLayoutManager) layoutManager;
+        int firstVisible = linearLayoutManager.findFirstVisibleItemPosition();
+        int lastVisible = linearLayoutManager.findLastVisibleItemPosition();
+        if (firstVisible == RecyclerView.NO_POSITION) {
+            return;
+        }
+        // 可见范围没有变化时不重复计算
+        if (firstVisible == lastFirstVisible && lastVisible == lastLastVisible) {
+            return;
+        }
+        lastFirstVisible = firstVisible;
+        lastLastVisible = lastVisible;
+
+        int spanCount = layoutManager instanceof GridLayoutManager
+                ? ((GridLayoutManager) layoutManager).getSpanCount() : 1;
+        int prefetchCount = PREFETCH_ROWS * spanCount;
+        boolean forward = linearLayoutManager.getOrientation() == RecyclerView.VERTICAL ? dy > 0 : dx > 0;
+
+        if (forward) {
+            int end = Math.min(source.getItemCount() - 1, lastVisible + prefetchCount);
+            for (int position = lastVisible + 1; position <= end; position++) {
+                source.prefetchItem(position);
+            }
+        } else {
+            int start = Math.max(0, firstVisible - prefetchCount);
+            for (int position = firstVisible - 1; position >= start; position--) {
+                source.prefetchItem(position);
+            }
+        }
+    }
+}
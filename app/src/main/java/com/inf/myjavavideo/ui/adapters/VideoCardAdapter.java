@@ -10,24 +10,33 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
 import com.inf.myjavavideo.R;
 import com.inf.myjavavideo.data.model.Video;
 import com.inf.myjavavideo.utils.MediaStoreHelper;
+import com.inf.myjavavideo.utils.ThumbnailCache;
+import com.inf.myjavavideo.utils.ThumbnailPipeline;
 
-import java.io.File;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
-public class VideoCardAdapter extends RecyclerView.Adapter<VideoCardAdapter.VideoViewHolder> {
+public class VideoCardAdapter extends RecyclerView.Adapter<VideoCardAdapter.VideoViewHolder>
+        implements ThumbnailPrefetcher.PrefetchSource {
 
     private final Context context;
     private final List<Video> videos;
     private final OnVideoClickListener listener;
+    private final ThumbnailPipeline thumbnailPipeline;
+    private final ThumbnailPipeline.OnThumbnailReadyListener thumbnailReadyListener = this::onThumbnailReady;
+    private final ThumbnailPrefetcher prefetcher = new ThumbnailPrefetcher(this);
+    // 已预取过的视频路径，同一视频只预取一次
+    private final Set<String> prefetchedPaths = new HashSet<>();
 
     public VideoCardAdapter(Context context, List<Video> videos, OnVideoClickListener listener) {
         this.context = context;
         this.videos = videos;
         this.listener = listener;
+        this.thumbnailPipeline = ThumbnailPipeline.getInstance(context);
     }
 
     @NonNull
@@ -48,10 +57,61 @@ public class VideoCardAdapter extends RecyclerView.Adapter<VideoCardAdapter.Vide
         return videos.size();
     }
 
+    @Override
+    public void onViewRecycled(@NonNull VideoViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.unbind();
+    }
+
+    @Override
+    public void prefetchItem(int position) {
+        Video video = videos.get(position);
+        if (video.getPath() == null || !prefetchedPaths.add(video.getPath())) {
+            return;
+        }
+        if (ThumbnailCache.preload(context, video, ThumbnailCache.CARD)) {
+            return;
+        }
+        if (video.getId() > 0) {
+            thumbnailPipeline.enqueue(video, ThumbnailPipeline.PRIORITY_PREFETCH);
+        } else {
+            ThumbnailCache.preloadFrame(context, video.getPath(), ThumbnailCache.CARD);
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        thumbnailPipeline.addListener(thumbnailReadyListener);
+        recyclerView.addOnScrollListener(prefetcher);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        thumbnailPipeline.removeListener(thumbnailReadyListener);
+        recyclerView.removeOnScrollListener(prefetcher);
+    }
+
+    // 缩略图生成完成后刷新对应的条目
+    private void onThumbnailReady(Video updated) {
+        for (int i = 0; i < videos.size(); i++) {
+            Video video = videos.get(i);
+            if (video.getId() == updated.getId()) {
+                // 新生成的缩略图需要重新预取
+                prefetchedPaths.remove(video.getPath());
+                video.setThumbnailPath(updated.getThumbnailPath());
+                video.setDuration(updated.getDuration());
+                notifyItemChanged(i);
+            }
+        }
+    }
+
     public class VideoViewHolder extends RecyclerView.ViewHolder {
         private final ImageView thumbnailImageView;
         private final TextView titleTextView;
         private final TextView durationTextView;
+        private Video boundVideo;
 
         public VideoViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -67,29 +127,36 @@ public class VideoCardAdapter extends RecyclerView.Adapter<VideoCardAdapter.Vide
             });
         }
 
+        // 条目被回收时取消图片加载，尚未开始的缩略图生成让位于可见条目
+        void unbind() {
+            ThumbnailCache.clear(thumbnailImageView);
+            if (boundVideo != null && boundVideo.getId() > 0) {
+                thumbnailPipeline.deprioritize(boundVideo.getId());
+            }
+            boundVideo = null;
+        }
+
         public void bind(Video video) {
+            boundVideo = video;
             titleTextView.setText(video.getTitle());
             
             // 设置时长
             String duration = MediaStoreHelper.formatDuration(video.getDuration());
             durationTextView.setText(duration);
             
-            // 加载缩略图
-            if (video.getThumbnailPath() != null && !video.getThumbnailPath().isEmpty()) {
-                Glide.with(context)
-                        .load(new File(video.getThumbnailPath()))
-                        .placeholder(R.color.gray)
-                        .error(R.color.gray_dark)
-                        .centerCrop()
-                        .into(thumbnailImageView);
+            // 加载缩略图，优先使用缓存中按卡片尺寸缩放好的版本
+            if (ThumbnailCache.load(thumbnailImageView, video, ThumbnailCache.CARD, R.color.gray)) {
+                return;
+            }
+            if (video.getId() > 0) {
+                // 已入库但还没有缩略图，先显示占位色，并请求流水线优先生成
+                ThumbnailCache.clear(thumbnailImageView);
+                thumbnailImageView.setImageResource(R.color.gray);
+                thumbnailPipeline.enqueue(video, ThumbnailPipeline.PRIORITY_VISIBLE);
             } else {
-                // 如果没有缩略图，使用视频路径加载第一帧
-                Glide.with(context)
-                        .load(video.getPath())
-                        .placeholder(R.color.gray)
-                        .error(R.color.gray_dark)
-                        .centerCrop()
-                        .into(thumbnailImageView);
+                // 未入库的视频（如选择器中的设备视频），使用视频路径加载第一帧
+                ThumbnailCache.loadFrame(thumbnailImageView, video.getPath(), ThumbnailCache.CARD,
+                        R.color.gray, R.color.gray_dark);
             }
         }
     }
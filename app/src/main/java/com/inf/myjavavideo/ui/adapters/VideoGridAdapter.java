@@ -1,7 +1,6 @@
 package com.inf.myjavavideo.ui.adapters;
 
 import android.content.Context;
-import android.net.Uri;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -12,30 +11,35 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.inf.myjavavideo.R;
-import com.inf.myjavavideo.data.AppDatabase;
 import com.inf.myjavavideo.data.model.Video;
 import com.inf.myjavavideo.utils.MediaStoreHelper;
+import com.inf.myjavavideo.utils.ThumbnailCache;
+import com.inf.myjavavideo.utils.ThumbnailPipeline;
 
-import java.io.File;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
 
-public class VideoGridAdapter extends RecyclerView.Adapter<VideoGridAdapter.VideoViewHolder> {
+public class VideoGridAdapter extends RecyclerView.Adapter<VideoGridAdapter.VideoViewHolder>
+        implements ThumbnailPrefetcher.PrefetchSource {
     private static final String TAG = "VideoGridAdapter";
     private final Context context;
     private final List<Video> videos;
     private final OnVideoClickListener listener;
-    private final ExecutorService executorService;
+    private final ThumbnailPipeline thumbnailPipeline;
+    private final ThumbnailPipeline.OnThumbnailReadyListener thumbnailReadyListener = this::onThumbnailReady;
+    private final ThumbnailPrefetcher prefetcher = new ThumbnailPrefetcher(this);
+    // 已预取过的视频路径，同一视频只预取一次
+    private final Set<String> prefetchedPaths = new HashSet<>();
+    // 暂时无法访问的视频，显示为半透明
+    private final Set<Integer> unavailableVideoIds = new HashSet<>();
 
     public VideoGridAdapter(Context context, List<Video> videos, OnVideoClickListener listener) {
         this.context = context;
         this.videos = videos;
         this.listener = listener;
-        this.executorService = Executors.newFixedThreadPool(3); // 使用线程池处理缩略图生成
+        this.thumbnailPipeline = ThumbnailPipeline.getInstance(context); // 缩略图由共享流水线生成
     }
 
     @NonNull
@@ -56,10 +60,42 @@ public class VideoGridAdapter extends RecyclerView.Adapter<VideoGridAdapter.Vide
         return videos.size();
     }
 
+    @Override
+    public void onViewRecycled(@NonNull VideoViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.unbind();
+    }
+
+    @Override
+    public void prefetchItem(int position) {
+        Video video = videos.get(position);
+        if (video.getPath() == null || !prefetchedPaths.add(video.getPath())) {
+            return;
+        }
+        if (!ThumbnailCache.preload(context, video, ThumbnailCache.GRID)) {
+            thumbnailPipeline.enqueue(video, ThumbnailPipeline.PRIORITY_PREFETCH);
+        }
+    }
+
+    /**
+     * 标记暂时无法访问的视频，只刷新状态发生变化的条目
+     */
+    public void setUnavailableVideoIds(Set<Integer> videoIds) {
+        for (int i = 0; i < videos.size(); i++) {
+            int id = videos.get(i).getId();
+            if (unavailableVideoIds.contains(id) != videoIds.contains(id)) {
+                notifyItemChanged(i);
+            }
+        }
+        unavailableVideoIds.clear();
+        unavailableVideoIds.addAll(videoIds);
+    }
+
     public class VideoViewHolder extends RecyclerView.ViewHolder {
         private final ImageView thumbnailImageView;
         private final TextView titleTextView;
         private final TextView durationTextView;
+        private Video boundVideo;
 
         public VideoViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -75,8 +111,19 @@ public class VideoGridAdapter extends RecyclerView.Adapter<VideoGridAdapter.Vide
             });
         }
 
+        // 条目被回收时取消图片加载，尚未开始的缩略图生成让位于可见条目
+        void unbind() {
+            ThumbnailCache.clear(thumbnailImageView);
+            if (boundVideo != null && boundVideo.getId() > 0) {
+                thumbnailPipeline.deprioritize(boundVideo.getId());
+            }
+            boundVideo = null;
+        }
+
         public void bind(Video video) {
+            boundVideo = video;
             titleTextView.setText(video.getTitle());
+            itemView.setAlpha(unavailableVideoIds.contains(video.getId()) ? 0.4f : 1f);
             
             // 设置时长
             String duration = MediaStoreHelper.formatDuration(video.getDuration());
@@ -86,115 +133,33 @@ public class VideoGridAdapter extends RecyclerView.Adapter<VideoGridAdapter.Vide
             loadThumbnail(video);
         }
         
-        // 加载视频缩略图
+        // 加载视频缩略图，优先使用缓存中按网格尺寸缩放好的版本
         private void loadThumbnail(Video video) {
-            // 显示占位图
-            thumbnailImageView.setImageResource(R.drawable.ic_video_placeholder);
-            
-            // 先尝试从缩略图路径加载
-            if (video.getThumbnailPath() != null && !video.getThumbnailPath().isEmpty()) {
-                File thumbnailFile = new File(video.getThumbnailPath());
-                if (thumbnailFile.exists() && thumbnailFile.length() > 0) {
-                    // 缩略图文件存在
-                    Log.d(TAG, "使用已存在的缩略图: " + video.getThumbnailPath());
-                    Glide.with(context)
-                            .load(thumbnailFile)
-                            .placeholder(R.drawable.ic_video_placeholder)
-                            .diskCacheStrategy(DiskCacheStrategy.NONE) // 不使用Glide缓存
-                            .skipMemoryCache(false) // 使用内存缓存提高性能
-                            .centerCrop()
-                            .into(thumbnailImageView);
-                    return;
-                }
+            if (ThumbnailCache.load(thumbnailImageView, video, ThumbnailCache.GRID, R.drawable.ic_video_placeholder)) {
+                return;
             }
             
-            // 没有有效的缩略图，尝试从视频路径加载
-            String videoPath = video.getPath();
-            if (videoPath != null && !videoPath.isEmpty()) {
-                if (videoPath.startsWith("content://")) {
-                    // 是内容URI
-                    Uri videoUri = Uri.parse(videoPath);
-                    Log.d(TAG, "从内容URI加载预览: " + videoUri);
-                    
-                    // 先用Glide直接尝试加载
-                    Glide.with(context)
-                            .load(videoUri)
-                            .placeholder(R.drawable.ic_video_placeholder)
-                            .error(R.drawable.ic_video_placeholder)
-                            .centerCrop()
-                            .into(thumbnailImageView);
-                    
-                    // 后台生成缩略图
-                    generateThumbnailInBackground(video);
-                } else {
-                    // 是文件路径
-                    File videoFile = new File(videoPath);
-                    if (videoFile.exists()) {
-                        Log.d(TAG, "从文件路径加载预览: " + videoPath);
-                        Glide.with(context)
-                                .load(videoFile)
-                                .placeholder(R.drawable.ic_video_placeholder)
-                                .error(R.drawable.ic_video_placeholder)
-                                .centerCrop()
-                                .into(thumbnailImageView);
-                        
-                        // 后台生成缩略图
-                        generateThumbnailInBackground(video);
-                    } else {
-                        Log.d(TAG, "视频文件不存在: " + videoPath);
-                        // 视频文件不存在，显示占位图
-                        thumbnailImageView.setImageResource(R.drawable.ic_video_placeholder);
-                    }
-                }
+            // 没有有效的缩略图，保留占位图并以可见优先级请求生成，完成后通过回调刷新
+            ThumbnailCache.clear(thumbnailImageView);
+            thumbnailImageView.setImageResource(R.drawable.ic_video_placeholder);
+            if (video.getPath() != null && !video.getPath().isEmpty()) {
+                thumbnailPipeline.enqueue(video, ThumbnailPipeline.PRIORITY_VISIBLE);
             } else {
                 Log.d(TAG, "视频路径为空");
-                // 视频路径为空，显示占位图
-                thumbnailImageView.setImageResource(R.drawable.ic_video_placeholder);
             }
         }
-        
-        // 在后台线程中生成缩略图
-        private void generateThumbnailInBackground(Video video) {
-            String videoId = String.valueOf(video.getId());
-            String videoPath = video.getPath();
-            
-            // 检查是否已经有缩略图，只在没有有效缩略图时才生成
-            if (video.getThumbnailPath() == null || video.getThumbnailPath().isEmpty() ||
-                    !new File(video.getThumbnailPath()).exists()) {
-                // 提交给线程池执行
-                executorService.submit(() -> {
-                    try {
-                        Log.d(TAG, "开始为视频生成缩略图: " + videoId);
-                        // 生成缩略图
-                        String thumbnailPath = MediaStoreHelper.generateThumbnail(context, videoPath, videoId);
-                        
-                        if (thumbnailPath != null && !thumbnailPath.isEmpty() && new File(thumbnailPath).exists()) {
-                            // 更新视频对象
-                            video.setThumbnailPath(thumbnailPath);
-                            // 更新数据库
-                            AppDatabase.getInstance(context).videoDao().update(video);
-                            Log.d(TAG, "缩略图生成成功并已更新到数据库: " + thumbnailPath);
-                            
-                            // 在主线程更新UI
-                            thumbnailImageView.post(() -> {
-                                // 确保View还在屏幕上显示
-                                if (thumbnailImageView.getWindowToken() != null) {
-                                    Glide.with(context)
-                                            .load(new File(thumbnailPath))
-                                            .placeholder(R.drawable.ic_video_placeholder)
-                                            .diskCacheStrategy(DiskCacheStrategy.NONE)
-                                            .skipMemoryCache(false)
-                                            .centerCrop()
-                                            .into(thumbnailImageView);
-                                }
-                            });
-                        } else {
-                            Log.e(TAG, "生成缩略图失败或缩略图文件不存在");
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "生成缩略图过程中出错: " + e.getMessage());
-                    }
-                });
+    }
+
+    // 缩略图生成完成后刷新对应的条目
+    private void onThumbnailReady(Video updated) {
+        for (int i = 0; i < videos.size(); i++) {
+            Video video = videos.get(i);
+            if (video.getId() == updated.getId()) {
+                // 新生成的缩略图需要重新预取
+                prefetchedPaths.remove(video.getPath());
+                video.setThumbnailPath(updated.getThumbnailPath());
+                video.setDuration(updated.getDuration());
+                notifyItemChanged(i);
             }
         }
     }
@@ -203,10 +168,22 @@ public class VideoGridAdapter extends RecyclerView.Adapter<VideoGridAdapter.Vide
         void onVideoClick(Video video);
     }
     
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        thumbnailPipeline.addListener(thumbnailReadyListener);
+        recyclerView.addOnScrollListener(prefetcher);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        thumbnailPipeline.removeListener(thumbnailReadyListener);
+        recyclerView.removeOnScrollListener(prefetcher);
+    }
+    
     // 释放资源
     public void release() {
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
-        }
+        thumbnailPipeline.removeListener(thumbnailReadyListener);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,273 @@
+package com.inf.myjavavideo.ui.adapters;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.room.InvalidationTracker;
+
+import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.Video;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 视频列表的分页加载
+ * 按排序键做游标分页，每页从上一页最后一条记录之后继续查询，不使用OFFSET；
+ * 滚动到已加载部分的末尾附近时自动加载下一页，首屏只查询一页。
+ * 通过Room的InvalidationTracker监听videos表，数据变化时重新查询已加载的范围，
+ * 并在后台与当前列表比较，只刷新显示内容有变化的条目；
+ * 缩略图流水线写入元数据、指纹和批量保存播放进度也会触发重新查询，但不会引起重新绑定
+ */
+public class VideoPager extends RecyclerView.OnScrollListener {
+    private static final String TAG = "VideoPager";
+    public static final int PAGE_SIZE = 60;
+    // 距离已加载末尾还剩多少条时开始加载下一页
+    private static final int LOAD_AHEAD = 20;
+    // 表变化后延迟重新加载，合并短时间内的连续写入
+    private static final long RELOAD_DELAY_MS = 300;
+
+    /**
+     * 列表的排序方式，每种都有对应的游标查询
+     */
+    public enum Order {
+        // 按标题升序，全部视频
+        TITLE,
+        // 按添加时间降序，全部视频
+        DATE_ADDED,
+        // 按添加时间降序，只包含收藏
+        FAVORITES
+    }
+
+    /**
+     * 页面加载完成的回调，在主线程调用
+     */
+    public interface Listener {
+        /**
+         * @param page 新加载的一页
+         * @param firstPage 是否为刷新后的第一页，此时应替换而不是追加
+         * @param diff 表变化后重新加载时不为空，page为替换后的整个列表，
+         *             应用diff通知适配器，只刷新有变化的条目
+         */
+        void onPageLoaded(List<Video> page, boolean firstPage, @Nullable DiffUtil.DiffResult diff);
+    }
+
+    private final VideoDao videoDao;
+    private final Order order;
+    private final ExecutorService executor;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 以下字段只在主线程访问
+    private Video lastLoaded;
+    // 已加载的全部视频，重新加载时与新结果比较
+    private List<Video> loaded = new ArrayList<>();
+    private int loadedCount;
+    private boolean loading;
+    private boolean endReached;
+    // 每次刷新递增，丢弃刷新前发出的查询结果
+    private int generation;
+    // 表已变化但还没有重新加载
+    private boolean stale;
+    private final Runnable reloadRunnable = this::reload;
+
+    public VideoPager(VideoDao videoDao, Order order, ExecutorService executor, Listener listener) {
+        this.videoDao = videoDao;
+        this.order = order;
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    /**
+     * 从头重新加载第一页
+     */
+    public void refresh() {
+        generation++;
+        stale = false;
+        lastLoaded = null;
+        loadedCount = 0;
+        endReached = false;
+        loadPage(null, PAGE_SIZE, null);
+    }
+
+    /**
+     * 在生命周期内监听videos表的变化
+     * 可见时延迟重新加载已加载的范围，不可见期间的变化等回到前台后再加载，销毁时取消监听
+     */
+    public void observeChanges(LifecycleOwner owner, InvalidationTracker invalidationTracker) {
+        InvalidationTracker.Observer observer = new InvalidationTracker.Observer("videos") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                // 在Room的后台线程回调
+                mainHandler.post(() -> {
+                    stale = true;
+                    scheduleReload(owner);
+                });
+            }
+        };
+        invalidationTracker.addObserver(observer);
+        owner.getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+            if (event == Lifecycle.Event.ON_START) {
+                scheduleReload(owner);
+            } else if (event == Lifecycle.Event.ON_DESTROY) {
+                invalidationTracker.removeObserver(observer);
+                mainHandler.removeCallbacks(reloadRunnable);
+            }
+        });
+    }
+
+    private void scheduleReload(LifecycleOwner owner) {
+        if (stale && owner.getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+            mainHandler.removeCallbacks(reloadRunnable);
+            mainHandler.postDelayed(reloadRunnable, RELOAD_DELAY_MS);
+        }
+    }
+
+    // 重新查询已加载的范围，一次查询替换整个列表，滚动位置不变
+    private void reload() {
+        generation++;
+        stale = false;
+        loadPage(null, Math.max(loadedCount, PAGE_SIZE), new ArrayList<>(loaded));
+    }
+
+    /**
+     * 加载下一页，正在加载或已到末尾时忽略
+     */
+    public void loadMore() {
+        if (!loading && !endReached) {
+            loadPage(lastLoaded, PAGE_SIZE, null);
+        }
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (loading || endReached || (dx == 0 && dy == 0)) {
+            return;
+        }
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        RecyclerView.Adapter<?> adapter = recyclerView.getAdapter();
+        if (!(layoutManager instanceof LinearLayoutManager) || adapter == null) {
+            return;
+        }
+        int lastVisible = ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+        if (lastVisible != RecyclerView.NO_POSITION && lastVisible >= adapter.getItemCount() - LOAD_AHEAD) {
+            loadMore();
+        }
+    }
+
+    /**
+     * @param previous 重新加载时为当前列表的副本，用于计算差异；其他情况为null
+     */
+    private void loadPage(Video after, int limit, List<Video> previous) {
+        loading = true;
+        int requestGeneration = generation;
+        executor.execute(() -> {
+            List<Video> page;
+            DiffUtil.DiffResult diff = null;
+            try {
+                page = query(after, limit);
+                if (previous != null) {
+                    diff = DiffUtil.calculateDiff(new VideoDiffCallback(previous, page));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "加载视频列表失败: " + e.getMessage());
+                mainHandler.post(() -> {
+                    if (requestGeneration == generation) {
+                        loading = false;
+                    }
+                });
+                return;
+            }
+
+            DiffUtil.DiffResult result = diff;
+            mainHandler.post(() -> {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                loading = false;
+                endReached = page.size() < limit;
+                if (after == null) {
+                    loaded = new ArrayList<>(page);
+                } else {
+                    loaded.addAll(page);
+                }
+                loadedCount = loaded.size();
+                if (after == null || !page.isEmpty()) {
+                    lastLoaded = page.isEmpty() ? null : page.get(page.size() - 1);
+                }
+                listener.onPageLoaded(page, after == null, result);
+            });
+        });
+    }
+
+    private List<Video> query(Video after, int limit) {
+        switch (order) {
+            case DATE_ADDED:
+                return after == null
+                        ? videoDao.getVideosByDateAddedDesc(limit)
+                        : videoDao.getVideosByDateAddedBefore(after.getDateAdded(), after.getId(), limit);
+            case FAVORITES:
+                return after == null
+                        ? videoDao.getFavoriteVideos(limit)
+                        : videoDao.getFavoriteVideosBefore(after.getDateAdded(), after.getId(), limit);
+            case TITLE:
+            default:
+                return after == null
+                        ? videoDao.getVideosByTitle(limit)
+                        : videoDao.getVideosByTitleAfter(titleOf(after), after.getId(), limit);
+        }
+    }
+
+    private static String titleOf(Video video) {
+        return video.getTitle() != null ? video.getTitle() : "";
+    }
+
+    // 按ID识别同一视频，只比较列表中显示的字段，元数据、指纹和播放进度的变化不引起重新绑定
+    private static class VideoDiffCallback extends DiffUtil.Callback {
+        private final List<Video> oldList;
+        private final List<Video> newList;
+
+        VideoDiffCallback(List<Video> oldList, List<Video> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).getId() == newList.get(newItemPosition).getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            Video oldVideo = oldList.get(oldItemPosition);
+            Video newVideo = newList.get(newItemPosition);
+            return Objects.equals(oldVideo.getTitle(), newVideo.getTitle())
+                    && Objects.equals(oldVideo.getPath(), newVideo.getPath())
+                    && Objects.equals(oldVideo.getThumbnailPath(), newVideo.getThumbnailPath())
+                    && oldVideo.getDuration() == newVideo.getDuration()
+                    && oldVideo.isFavorite() == newVideo.isFavorite();
+        }
+    }
+}
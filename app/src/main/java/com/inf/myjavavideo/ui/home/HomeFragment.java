@@ -1,5 +1,6 @@
 package com.inf.myjavavideo.ui.home;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.view.LayoutInflater;
@@ -10,7 +11,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.SearchView;
 import androidx.fragment.app.Fragment;
-import androidx.recyclerview.widget.RecyclerView;
+import androidx.lifecycle.LiveData;
+import androidx.recyclerview.widget.DiffUtil;
 
 import com.inf.myjavavideo.R;
 import com.inf.myjavavideo.data.AppDatabase;
@@ -19,23 +21,34 @@ import com.inf.myjavavideo.data.model.Video;
 import com.inf.myjavavideo.databinding.FragmentHomeBinding;
 import com.inf.myjavavideo.ui.adapters.VideoCardAdapter;
 import com.inf.myjavavideo.ui.adapters.VideoGridAdapter;
+import com.inf.myjavavideo.ui.adapters.VideoPager;
 import com.inf.myjavavideo.ui.player.MediaPlayerActivity;
-import com.inf.myjavavideo.utils.MediaStoreHelper;
+import com.inf.myjavavideo.utils.MediaStoreSync;
+import com.inf.myjavavideo.utils.VideoSearch;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class HomeFragment extends Fragment implements VideoCardAdapter.OnVideoClickListener, VideoGridAdapter.OnVideoClickListener {
 
+    private static final int RECENT_VIDEO_LIMIT = 10;
+
     private FragmentHomeBinding binding;
     private ExecutorService executorService;
     private VideoDao videoDao;
     private VideoCardAdapter recentVideosAdapter;
     private VideoGridAdapter favoritesAdapter;
+    private VideoPager favoritesPager;
     private List<Video> recentVideos = new ArrayList<>();
     private List<Video> favoriteVideos = new ArrayList<>();
+    private boolean isSearching;
+    // 搜索结果中字幕命中的第一个时间点，点击时从该处开始播放
+    private final Map<Integer, Long> searchCueTimes = new HashMap<>();
+    private LiveData<List<Video>> recentVideosLiveData;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -56,6 +69,10 @@ public class HomeFragment extends Fragment implements VideoCardAdapter.OnVideoCl
         
         setupRecyclerViews();
         setupSearchView();
+        
+        // 最近视频随videos表的变化自动更新
+        recentVideosLiveData = videoDao.observeRecentVideos(RECENT_VIDEO_LIMIT);
+        recentVideosLiveData.observe(getViewLifecycleOwner(), this::onRecentVideosChanged);
         loadVideos();
     }
 
@@ -67,6 +84,13 @@ public class HomeFragment extends Fragment implements VideoCardAdapter.OnVideoCl
         // 设置收藏视频网格
         favoritesAdapter = new VideoGridAdapter(requireContext(), favoriteVideos, this);
         binding.recyclerFavorites.setAdapter(favoritesAdapter);
+        
+        // 收藏分页加载，滚动到末尾附近时加载下一页
+        favoritesPager = new VideoPager(videoDao, VideoPager.Order.FAVORITES, executorService,
+                this::onFavoritesPageLoaded);
+        binding.recyclerFavorites.addOnScrollListener(favoritesPager);
+        favoritesPager.observeChanges(getViewLifecycleOwner(),
+                AppDatabase.getInstance(requireContext()).getInvalidationTracker());
     }
 
     private void setupSearchView() {
@@ -88,42 +112,49 @@ public class HomeFragment extends Fragment implements VideoCardAdapter.OnVideoCl
     }
 
     private void loadVideos() {
-        executorService.execute(() -> {
-            // 读取最近添加的视频
-            final List<Video> recentList = videoDao.getVideosByDateAddedDesc();
-            
-            // 如果数据库中没有视频，则从媒体库中读取
-            if (recentList.isEmpty()) {
-                List<Video> mediaStoreVideos = MediaStoreHelper.loadVideosFromMediaStore(requireContext());
-                
-                // 保存到数据库
-                for (Video video : mediaStoreVideos) {
-                    videoDao.insert(video);
-                }
-                
-                // 重新获取视频列表
-                recentList.addAll(mediaStoreVideos);
-            }
-            
-            // 获取收藏的视频
-            final List<Video> favoriteList = videoDao.getFavoriteVideos();
-            
-            requireActivity().runOnUiThread(() -> {
-                updateRecentVideos(recentList);
-                updateFavoriteVideos(favoriteList);
-                
-                // 检查是否有视频
-                binding.textNoVideos.setVisibility(
-                        (recentList.isEmpty() && favoriteList.isEmpty()) ? View.VISIBLE : View.GONE);
-            });
-        });
+        isSearching = false;
+        searchCueTimes.clear();
+        // 退出搜索时恢复最近视频和收藏
+        List<Video> recentList = recentVideosLiveData.getValue();
+        if (recentList != null) {
+            onRecentVideosChanged(recentList);
+        }
+        favoritesPager.refresh();
+        
+        // 增量同步媒体库，只处理上次同步之后新增、修改或删除的视频，变化通过表监听反映到列表
+        Context appContext = requireContext().getApplicationContext();
+        executorService.execute(() -> MediaStoreSync.sync(appContext));
+    }
+    
+    private void onRecentVideosChanged(List<Video> videos) {
+        if (binding == null || isSearching) {
+            return;
+        }
+        updateRecentVideos(videos);
+        binding.textNoVideos.setVisibility(
+                (recentVideos.isEmpty() && favoriteVideos.isEmpty()) ? View.VISIBLE : View.GONE);
     }
 
     private void searchVideos(String query) {
+        isSearching = true;
         executorService.execute(() -> {
-            List<Video> searchResults = videoDao.searchVideos(query);
+            // 全文搜索标题和字幕，结果已按相关度排序
+            List<VideoSearch.Result> results = VideoSearch.getInstance(requireContext()).searchVideos(query);
+            List<Video> searchResults = new ArrayList<>();
+            Map<Integer, Long> cueTimes = new HashMap<>();
+            for (VideoSearch.Result result : results) {
+                searchResults.add(result.video);
+                if (!result.cueTimes.isEmpty()) {
+                    cueTimes.put(result.video.getId(), result.cueTimes.get(0));
+                }
+            }
             
             requireActivity().runOnUiThread(() -> {
+                if (binding == null || !isSearching) {
+                    return;
+                }
+                searchCueTimes.clear();
+                searchCueTimes.putAll(cueTimes);
                 updateRecentVideos(searchResults);
                 binding.textRecentVideos.setText("搜索结果");
                 binding.textFavorites.setVisibility(View.GONE);
@@ -138,14 +169,38 @@ public class HomeFragment extends Fragment implements VideoCardAdapter.OnVideoCl
 
     private void updateRecentVideos(List<Video> videos) {
         recentVideos.clear();
-        if (videos.size() > 10) {
-            recentVideos.addAll(videos.subList(0, 10));
+        if (videos.size() > RECENT_VIDEO_LIMIT) {
+            recentVideos.addAll(videos.subList(0, RECENT_VIDEO_LIMIT));
         } else {
             recentVideos.addAll(videos);
         }
         recentVideosAdapter.notifyDataSetChanged();
     }
 
+    private void onFavoritesPageLoaded(List<Video> page, boolean firstPage, @Nullable DiffUtil.DiffResult diff) {
+        if (binding == null || isSearching) {
+            return;
+        }
+        if (diff != null) {
+            // 表变化后重新加载，只刷新有变化的条目
+            favoriteVideos.clear();
+            favoriteVideos.addAll(page);
+            diff.dispatchUpdatesTo(favoritesAdapter);
+            binding.textFavorites.setVisibility(page.isEmpty() ? View.GONE : View.VISIBLE);
+            binding.recyclerFavorites.setVisibility(page.isEmpty() ? View.GONE : View.VISIBLE);
+        } else if (firstPage) {
+            updateFavoriteVideos(page);
+        } else if (!page.isEmpty()) {
+            int start = favoriteVideos.size();
+            favoriteVideos.addAll(page);
+            favoritesAdapter.notifyItemRangeInserted(start, page.size());
+        }
+        
+        // 检查是否有视频
+        binding.textNoVideos.setVisibility(
+                (recentVideos.isEmpty() && favoriteVideos.isEmpty()) ? View.VISIBLE : View.GONE);
+    }
+    
     private void updateFavoriteVideos(List<Video> videos) {
         favoriteVideos.clear();
         favoriteVideos.addAll(videos);
@@ -161,6 +216,10 @@ public class HomeFragment extends Fragment implements VideoCardAdapter.OnVideoCl
         // 打开视频播放器
         Intent intent = new Intent(requireContext(), MediaPlayerActivity.class);
         intent.putExtra("video_id", video.getId());
+        Long cueTime = isSearching ? searchCueTimes.get(video.getId()) : null;
+        if (cueTime != null) {
+            intent.putExtra("start_position", cueTime.longValue());
+        }
         startActivity(intent);
     }
 
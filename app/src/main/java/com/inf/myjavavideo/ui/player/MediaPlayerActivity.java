@@ -40,10 +40,13 @@ import com.inf.myjavavideo.data.dao.VideoDao;
 import com.inf.myjavavideo.data.model.Playlist;
 import com.inf.myjavavideo.data.model.Subtitle;
 import com.inf.myjavavideo.data.model.Video;
+import com.inf.myjavavideo.utils.PlaybackPositionStore;
+import com.inf.myjavavideo.utils.ThumbnailStore;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutorService;
@@ -80,11 +83,14 @@ public class MediaPlayerActivity extends AppCompatActivity
     // 数据
     private ExecutorService executorService;
     private VideoDao videoDao;
+    private PlaybackPositionStore positionStore;
     private SubtitleDao subtitleDao;
     private Video currentVideo;
     private boolean isFullscreen = false;
     private boolean isSettingsVisible = false;
     private int currentPlaylistId = -1;
+    // 从搜索结果打开时的起始位置（字幕命中的时间点），只对第一个视频生效
+    private long pendingStartPosition = -1;
     private List<Video> currentPlaylistVideos;
     
     // 字幕
@@ -112,6 +118,7 @@ public class MediaPlayerActivity extends AppCompatActivity
                             int currentPosition = mediaPlayer.getCurrentPosition();
                             seekBar.setProgress(currentPosition);
                             currentPositionText.setText(formatDuration(currentPosition));
+                            updatePlaybackPosition(currentPosition);
                             
                             // 如果总时长不正确，尝试再次获取
                             if (seekBar.getMax() <= 0 || "00:00".equals(durationText.getText().toString())) {
@@ -154,6 +161,7 @@ public class MediaPlayerActivity extends AppCompatActivity
         // 初始化数据
         executorService = Executors.newSingleThreadExecutor();
         videoDao = AppDatabase.getInstance(this).videoDao();
+        positionStore = PlaybackPositionStore.getInstance(this);
         subtitleDao = AppDatabase.getInstance(this).subtitleDao();
         
         // 初始化字幕处理
@@ -162,6 +170,7 @@ public class MediaPlayerActivity extends AppCompatActivity
         // 获取视频ID和播放列表ID
         int videoId = getIntent().getIntExtra("video_id", -1);
         currentPlaylistId = getIntent().getIntExtra("playlist_id", -1);
+        pendingStartPosition = getIntent().getLongExtra("start_position", -1);
         
         if (videoId == -1) {
             Toast.makeText(this, "视频不存在", Toast.LENGTH_SHORT).show();
@@ -308,6 +317,7 @@ public class MediaPlayerActivity extends AppCompatActivity
                     try {
                         // 从数据库中删除
                         videoDao.delete(video);
+                        ThumbnailStore.getInstance(this).removeForVideo(video);
                         
                         runOnUiThread(() -> {
                             Toast.makeText(this, "已从库中移除无效视频", Toast.LENGTH_SHORT).show();
@@ -456,9 +466,12 @@ public class MediaPlayerActivity extends AppCompatActivity
             Log.w(TAG, "无法获取视频时长，返回值为: " + duration);
         }
         
-        // 恢复上次播放位置
-        if (currentVideo.getLastPlayedPosition() > 0) {
-            mp.seekTo((int) currentVideo.getLastPlayedPosition());
+        // 从搜索命中的字幕处开始，否则恢复上次播放位置
+        if (pendingStartPosition >= 0) {
+            mp.seekTo((int) pendingStartPosition);
+            pendingStartPosition = -1;
+        } else if (positionStore.getPosition(currentVideo) > 0) {
+            mp.seekTo((int) positionStore.getPosition(currentVideo));
         }
         
         // 开始播放
@@ -641,11 +654,10 @@ public class MediaPlayerActivity extends AppCompatActivity
         return true; // 表示我们已处理错误
     }
     
+    // 只记录到内存，由PlaybackPositionStore合并后写入数据库
     private void updatePlaybackPosition(long position) {
         if (currentVideo != null) {
-            executorService.execute(() -> {
-                videoDao.updateLastPlayedPosition(currentVideo.getId(), position);
-            });
+            positionStore.record(currentVideo.getId(), position);
         }
     }
     
@@ -910,6 +922,7 @@ public class MediaPlayerActivity extends AppCompatActivity
         // 更新当前播放位置为0（结束播放）
         if (currentVideo != null) {
             updatePlaybackPosition(0);
+            positionStore.flush();
         }
         
         // 切换到新视频
@@ -993,6 +1006,7 @@ public class MediaPlayerActivity extends AppCompatActivity
             // 暂停播放
             pausePlayback();
         }
+        positionStore.flush();
         
         // 停止字幕跟踪
         if (subtitleRunnable != null) {
@@ -1040,6 +1054,14 @@ public class MediaPlayerActivity extends AppCompatActivity
             playVideo(video);
         }
     }
+
+    @Override
+    public void onPlaylistReordered(int playlistId, List<Video> videos) {
+        // 上一个/下一个按调整后的顺序切换
+        if (playlistId == currentPlaylistId) {
+            currentPlaylistVideos = new ArrayList<>(videos);
+        }
+    }
     
     // 字幕相关功能
     private void startSubtitleTracking() {
@@ -3,13 +3,13 @@ package com.inf.myjavavideo.ui.player;
 import android.app.Dialog;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.ImageView;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -19,18 +19,19 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.DialogFragment;
 
-import com.bumptech.glide.Glide;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.inf.myjavavideo.R;
 import com.inf.myjavavideo.data.AppDatabase;
 import com.inf.myjavavideo.data.dao.PlaylistDao;
 import com.inf.myjavavideo.data.dao.PlaylistVideoDao;
 import com.inf.myjavavideo.data.model.Playlist;
+import com.inf.myjavavideo.data.model.PlaylistSummary;
 import com.inf.myjavavideo.data.model.PlaylistVideo;
-import com.inf.myjavavideo.data.model.Video;
+import com.inf.myjavavideo.ui.adapters.PlaylistListAdapter;
+import com.inf.myjavavideo.utils.PlaylistCovers;
 import com.inf.myjavavideo.utils.SessionManager;
 
-import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -44,8 +45,9 @@ public class PlaylistDialogFragment extends DialogFragment {
     private PlaylistDao playlistDao;
     private PlaylistVideoDao playlistVideoDao;
     private SessionManager sessionManager;
-    private List<Playlist> playlists;
-    private PlaylistAdapter adapter;
+    private final List<PlaylistSummary> playlists = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private PlaylistListAdapter adapter;
     private ListView listView;
     private TextView emptyTextView;
     
@@ -81,6 +83,14 @@ public class PlaylistDialogFragment extends DialogFragment {
         emptyTextView = view.findViewById(R.id.text_empty_playlists);
         Button createButton = view.findViewById(R.id.button_create_playlist);
         
+        // 适配器只创建一次，查询结果变化时原地更新数据
+        adapter = new PlaylistListAdapter(requireContext(), playlists);
+        listView.setAdapter(adapter);
+        listView.setOnItemClickListener((parent, itemView, position, id) -> {
+            PlaylistSummary selectedPlaylist = playlists.get(position);
+            addVideoToPlaylist(selectedPlaylist.getId());
+        });
+        
         // 加载播放列表
         loadPlaylists();
         
@@ -102,24 +112,31 @@ public class PlaylistDialogFragment extends DialogFragment {
             return;
         }
         
+        // 新建播放列表或添加视频后自动重新查询
+        playlistDao.observePlaylistSummaries(userId).observe(this, this::onPlaylistsChanged);
+    }
+    
+    // 缺少封面的播放列表在后台交给PlaylistCovers重新拼接
+    // 后台任务执行时对话框可能已关闭，先取出应用Context，回到主线程后再检查是否仍然显示
+    private void onPlaylistsChanged(List<PlaylistSummary> summaries) {
+        Context appContext = requireContext().getApplicationContext();
         executorService.execute(() -> {
-            playlists = playlistDao.getPlaylistsByUserId(userId);
+            PlaylistCovers.getInstance(appContext).rebuildMissing(summaries, adapter::onCoverReady);
             
-            requireActivity().runOnUiThread(() -> {
+            mainHandler.post(() -> {
+                if (!isAdded()) {
+                    return;
+                }
+                playlists.clear();
+                playlists.addAll(summaries);
+                adapter.notifyDataSetChanged();
+                
                 if (playlists.isEmpty()) {
                     listView.setVisibility(View.GONE);
                     emptyTextView.setVisibility(View.VISIBLE);
                 } else {
                     listView.setVisibility(View.VISIBLE);
                     emptyTextView.setVisibility(View.GONE);
-                    
-                    adapter = new PlaylistAdapter(requireContext(), playlists);
-                    listView.setAdapter(adapter);
-                    
-                    listView.setOnItemClickListener((parent, view, position, id) -> {
-                        Playlist selectedPlaylist = playlists.get(position);
-                        addVideoToPlaylist(selectedPlaylist.getId());
-                    });
                 }
             });
         });
@@ -151,24 +168,10 @@ public class PlaylistDialogFragment extends DialogFragment {
             long playlistId = playlistDao.insert(playlist);
             
             if (playlistId > 0) {
-                // 创建成功后刷新列表
-                playlists = playlistDao.getPlaylistsByUserId(userId);
-                
+                // 列表由查询监听刷新
                 requireActivity().runOnUiThread(() -> {
                     Toast.makeText(requireContext(), R.string.playlist_created, Toast.LENGTH_SHORT).show();
                     
-                    // 更新ListView
-                    if (playlists.isEmpty()) {
-                        listView.setVisibility(View.GONE);
-                        emptyTextView.setVisibility(View.VISIBLE);
-                    } else {
-                        listView.setVisibility(View.VISIBLE);
-                        emptyTextView.setVisibility(View.GONE);
-                        
-                        adapter = new PlaylistAdapter(requireContext(), playlists);
-                        listView.setAdapter(adapter);
-                    }
-                    
                     // 添加视频到新创建的播放列表
                     addVideoToPlaylist((int) playlistId);
                 });
@@ -194,12 +197,8 @@ public class PlaylistDialogFragment extends DialogFragment {
             }
             
             if (!alreadyExists) {
-                // 获取播放列表中的最大位置
-                int position = playlistVideoDao.getMaxPositionForPlaylist(playlistId);
-                
-                // 添加视频到播放列表
-                PlaylistVideo playlistVideo = new PlaylistVideo(playlistId, videoId, position + 1);
-                long result = playlistVideoDao.insert(playlistVideo);
+                // 添加视频到播放列表末尾
+                long result = playlistVideoDao.appendVideo(playlistId, videoId);
                 
                 requireActivity().runOnUiThread(() -> {
                     if (result > 0) {
@@ -242,94 +241,4 @@ public class PlaylistDialogFragment extends DialogFragment {
             executorService.shutdown();
         }
     }
-    
-    private class PlaylistAdapter extends ArrayAdapter<Playlist> {
-        
-        public PlaylistAdapter(Context context, List<Playlist> playlists) {
-            super(context, R.layout.item_playlist, playlists);
-        }
-        
-        @NonNull
-        @Override
-        public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-            if (convertView == null) {
-                convertView = LayoutInflater.from(getContext()).inflate(R.layout.item_playlist, parent, false);
-            }
-            
-            TextView nameTextView = convertView.findViewById(R.id.text_playlist_name);
-            TextView countTextView = convertView.findViewById(R.id.text_video_count);
-            ImageView thumbnailImageView = convertView.findViewById(R.id.image_playlist_thumbnail);
-            
-            Playlist playlist = getItem(position);
-            if (playlist != null) {
-                nameTextView.setText(playlist.getName());
-                
-                // 获取播放列表中的视频数量
-                executorService.execute(() -> {
-                    int videoCount = playlistVideoDao.getPlaylistVideoCount(playlist.getId());
-                    
-                    if (getActivity() != null && !getActivity().isFinishing()) {
-                        requireActivity().runOnUiThread(() -> {
-                            countTextView.setText(videoCount + " 个视频");
-                        });
-                    }
-                    
-                    // 获取播放列表中的第一个视频作为缩略图
-                    if (videoCount > 0 && (playlist.getThumbnailPath() == null || playlist.getThumbnailPath().isEmpty())) {
-                        List<Video> playlistVideos = playlistVideoDao.getVideosForPlaylist(playlist.getId());
-                        if (!playlistVideos.isEmpty()) {
-                            Video firstVideo = playlistVideos.get(0);
-                            if (firstVideo.getThumbnailPath() != null && !firstVideo.getThumbnailPath().isEmpty()) {
-                                // 使用第一个视频的缩略图
-                                String thumbnailPath = firstVideo.getThumbnailPath();
-                                // 更新播放列表的缩略图路径
-                                playlist.setThumbnailPath(thumbnailPath);
-                                playlistDao.update(playlist);
-                                
-                                if (getActivity() != null && !getActivity().isFinishing()) {
-                                    requireActivity().runOnUiThread(() -> {
-                                        // 加载缩略图
-                                        Glide.with(getContext())
-                                                .load(new File(thumbnailPath))
-                                                .placeholder(R.drawable.ic_video_placeholder)
-                                                .error(R.drawable.ic_video_placeholder)
-                                                .centerCrop()
-                                                .into(thumbnailImageView);
-                                    });
-                                }
-                            } else {
-                                // 尝试使用视频路径加载缩略图
-                                String videoPath = firstVideo.getPath();
-                                if (getActivity() != null && !getActivity().isFinishing()) {
-                                    requireActivity().runOnUiThread(() -> {
-                                        // 直接尝试加载视频第一帧
-                                        Glide.with(getContext())
-                                                .load(videoPath)
-                                                .placeholder(R.drawable.ic_video_placeholder)
-                                                .error(R.drawable.ic_video_placeholder)
-                                                .centerCrop()
-                                                .into(thumbnailImageView);
-                                    });
-                                }
-                            }
-                        }
-                    } else if (playlist.getThumbnailPath() != null && !playlist.getThumbnailPath().isEmpty()) {
-                        // 已有缩略图，直接加载
-                        if (getActivity() != null && !getActivity().isFinishing()) {
-                            requireActivity().runOnUiThread(() -> {
-                                Glide.with(getContext())
-                                        .load(new File(playlist.getThumbnailPath()))
-                                        .placeholder(R.drawable.ic_video_placeholder)
-                                        .error(R.drawable.ic_video_placeholder)
-                                        .centerCrop()
-                                        .into(thumbnailImageView);
-                            });
-                        }
-                    }
-                });
-            }
-            
-            return convertView;
-        }
-    }
 } 
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.inf.myjavavideo.ui.player;
 import android.app.Dialog;
 import android.content.Context;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,6 +13,7 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.DialogFragment;
+import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -32,6 +34,7 @@ import java.util.concurrent.Executors;
 
 public class PlaylistVideosDialogFragment extends DialogFragment {
     
+    private static final String TAG = "PlaylistVideosDialog";
     private static final String ARG_PLAYLIST_ID = "playlist_id";
     private static final String ARG_CURRENT_VIDEO_ID = "current_video_id";
     
@@ -47,6 +50,9 @@ public class PlaylistVideosDialogFragment extends DialogFragment {
     
     public interface PlaylistVideoListener {
         void onVideoSelected(Video video, int playlistId);
+        
+        // 拖动调整顺序后回调，videos为调整后的完整列表
+        void onPlaylistReordered(int playlistId, List<Video> videos);
     }
     
     public static PlaylistVideosDialogFragment newInstance(int playlistId, int currentVideoId) {
@@ -96,6 +102,9 @@ public class PlaylistVideosDialogFragment extends DialogFragment {
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerView.setAdapter(adapter);
         
+        // 长按拖动调整顺序，松手后才写入数据库
+        new ItemTouchHelper(new ReorderCallback()).attachToRecyclerView(recyclerView);
+        
         // 加载视频
         loadVideos();
         
@@ -133,6 +142,83 @@ public class PlaylistVideosDialogFragment extends DialogFragment {
         });
     }
     
+    // 保存一次拖动的结果，只改写被移动视频的排序值；保存失败时重新加载，显示数据库中的实际顺序
+    private void saveMove(int toPosition) {
+        int videoId = videos.get(toPosition).getId();
+        int previousVideoId = toPosition > 0 ? videos.get(toPosition - 1).getId() : -1;
+        int nextVideoId = toPosition < videos.size() - 1 ? videos.get(toPosition + 1).getId() : -1;
+        List<Video> reordered = new ArrayList<>(videos);
+        
+        executorService.execute(() -> {
+            boolean saved;
+            try {
+                saved = playlistVideoDao.moveVideo(playlistId, videoId, previousVideoId, nextVideoId);
+            } catch (Exception e) {
+                Log.e(TAG, "保存播放列表顺序失败: " + e.getMessage());
+                saved = false;
+            }
+            if (!saved) {
+                // 期间播放列表被修改，如相邻视频已被移除
+                Log.w(TAG, "播放列表顺序未保存，重新加载");
+                if (getActivity() != null) {
+                    loadVideos();
+                }
+                return;
+            }
+            // 松手后立即关闭对话框时顺序仍然保存，只是不再通知播放器
+            if (getActivity() == null) {
+                return;
+            }
+            getActivity().runOnUiThread(() -> {
+                if (listener != null) {
+                    listener.onPlaylistReordered(playlistId, reordered);
+                }
+            });
+        });
+    }
+    
+    // 拖动过程中只移动列表项，松手时记录最终位置
+    private class ReorderCallback extends ItemTouchHelper.SimpleCallback {
+        private int fromPosition = RecyclerView.NO_POSITION;
+        private int toPosition = RecyclerView.NO_POSITION;
+        
+        ReorderCallback() {
+            super(ItemTouchHelper.UP | ItemTouchHelper.DOWN, 0);
+        }
+        
+        @Override
+        public boolean onMove(@NonNull RecyclerView recyclerView,
+                              @NonNull RecyclerView.ViewHolder viewHolder,
+                              @NonNull RecyclerView.ViewHolder target) {
+            int from = viewHolder.getAdapterPosition();
+            int to = target.getAdapterPosition();
+            if (from == RecyclerView.NO_POSITION || to == RecyclerView.NO_POSITION) {
+                return false;
+            }
+            if (fromPosition == RecyclerView.NO_POSITION) {
+                fromPosition = from;
+            }
+            toPosition = to;
+            videos.add(to, videos.remove(from));
+            adapter.notifyItemMoved(from, to);
+            return true;
+        }
+        
+        @Override
+        public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
+        }
+        
+        @Override
+        public void clearView(@NonNull RecyclerView recyclerView, @NonNull RecyclerView.ViewHolder viewHolder) {
+            super.clearView(recyclerView, viewHolder);
+            if (fromPosition != RecyclerView.NO_POSITION && fromPosition != toPosition) {
+                saveMove(toPosition);
+            }
+            fromPosition = RecyclerView.NO_POSITION;
+            toPosition = RecyclerView.NO_POSITION;
+        }
+    }
+    
     @Override
     public void onAttach(@NonNull Context context) {
         super.onAttach(context);
@@ -27,8 +27,6 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class SubtitleListDialogFragment extends DialogFragment {
     
@@ -38,7 +36,6 @@ public class SubtitleListDialogFragment extends DialogFragment {
     private SubtitleListListener listener;
     private SubtitleAdapter adapter;
     private List<Subtitle> subtitles = new ArrayList<>();
-    private ExecutorService executorService;
     private SubtitleDao subtitleDao;
     
     public interface SubtitleListListener {
@@ -62,7 +59,6 @@ public class SubtitleListDialogFragment extends DialogFragment {
             videoId = getArguments().getInt(ARG_VIDEO_ID);
         }
         
-        executorService = Executors.newSingleThreadExecutor();
         subtitleDao = AppDatabase.getInstance(requireContext()).subtitleDao();
         
         // 初始化适配器
@@ -123,14 +119,12 @@ public class SubtitleListDialogFragment extends DialogFragment {
         return builder.create();
     }
     
+    // 字幕编辑后自动刷新
     private void loadSubtitles() {
-        executorService.execute(() -> {
-            List<Subtitle> loadedSubtitles = subtitleDao.getSubtitlesForVideo(videoId);
-            requireActivity().runOnUiThread(() -> {
-                subtitles.clear();
-                subtitles.addAll(loadedSubtitles);
-                adapter.notifyDataSetChanged();
-            });
+        subtitleDao.observeSubtitlesForVideo(videoId).observe(this, loadedSubtitles -> {
+            subtitles.clear();
+            subtitles.addAll(loadedSubtitles);
+            adapter.notifyDataSetChanged();
         });
     }
     
@@ -150,14 +144,6 @@ public class SubtitleListDialogFragment extends DialogFragment {
         listener = null;
     }
     
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (executorService != null) {
-            executorService.shutdown();
-        }
-    }
-    
     // 字幕适配器
     public static class SubtitleAdapter extends RecyclerView.Adapter<SubtitleAdapter.SubtitleViewHolder> {
         
@@ -1,18 +1,22 @@
 package com.inf.myjavavideo.ui.player;
 
 import android.content.pm.ActivityInfo;
+import android.graphics.Color;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
+import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.widget.ArrayAdapter;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
@@ -42,8 +46,11 @@ import com.inf.myjavavideo.data.model.Subtitle;
 import com.inf.myjavavideo.data.model.Video;
 import com.inf.myjavavideo.data.model.Playlist;
 import com.inf.myjavavideo.databinding.ActivityVideoPlayerBinding;
+import com.inf.myjavavideo.utils.PlaybackPositionStore;
+import com.inf.myjavavideo.utils.SeekPreviewSprites;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.List;
@@ -54,11 +61,15 @@ public class VideoPlayerActivity extends AppCompatActivity
                    SubtitleEditorDialogFragment.SubtitleEditorListener,
                    SubtitleListDialogFragment.SubtitleListListener {
 
+    private static final int SEEK_PREVIEW_WIDTH_DP = 160;
+    private static final int SEEK_PREVIEW_BOTTOM_MARGIN_DP = 72;
+
     private ActivityVideoPlayerBinding binding;
     private ExoPlayer player;
     private DefaultTrackSelector trackSelector;
     private ExecutorService executorService;
     private VideoDao videoDao;
+    private PlaybackPositionStore positionStore;
     private SubtitleDao subtitleDao;
     private Video currentVideo;
     private boolean isFullscreen = false;
@@ -73,6 +84,12 @@ public class VideoPlayerActivity extends AppCompatActivity
     
     // 添加进度条引用
     private ProgressBar progressBar;
+    
+    // 拖动进度条时显示的预览图，从预先生成的雪碧图中裁剪
+    private ImageView seekPreviewView;
+    private final SeekPreviewSprites.FrameDrawable seekPreviewDrawable = new SeekPreviewSprites.FrameDrawable();
+    private SeekPreviewSprites.Sheet seekPreviewSheet;
+    private int seekPreviewRequestedId = -1;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -88,6 +105,7 @@ public class VideoPlayerActivity extends AppCompatActivity
         // 初始化
         executorService = Executors.newSingleThreadExecutor();
         videoDao = AppDatabase.getInstance(this).videoDao();
+        positionStore = PlaybackPositionStore.getInstance(this);
         subtitleDao = AppDatabase.getInstance(this).subtitleDao();
         
         // 初始化进度条
@@ -96,6 +114,9 @@ public class VideoPlayerActivity extends AppCompatActivity
         // 添加字幕显示视图
         addSubtitleDisplayView();
         
+        // 添加拖动预览视图
+        addSeekPreviewView();
+        
         // 初始化字幕处理
         subtitleHandler = new Handler(Looper.getMainLooper());
 
@@ -158,6 +179,73 @@ public class VideoPlayerActivity extends AppCompatActivity
         }
     }
 
+    private void addSeekPreviewView() {
+        seekPreviewView = new ImageView(this);
+        seekPreviewView.setImageDrawable(seekPreviewDrawable);
+        seekPreviewView.setScaleType(ImageView.ScaleType.FIT_XY);
+        seekPreviewView.setBackgroundColor(Color.BLACK);
+        seekPreviewView.setVisibility(View.GONE);
+        
+        // 显示在底部控制栏上方
+        float density = getResources().getDisplayMetrics().density;
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
+                Math.round(SEEK_PREVIEW_WIDTH_DP * density),
+                Math.round(SEEK_PREVIEW_WIDTH_DP * density * 9 / 16),
+                Gravity.BOTTOM | Gravity.START);
+        params.bottomMargin = Math.round(SEEK_PREVIEW_BOTTOM_MARGIN_DP * density);
+        
+        FrameLayout overlayFrame = binding.playerView.getOverlayFrameLayout();
+        if (overlayFrame != null) {
+            overlayFrame.addView(seekPreviewView, params);
+        }
+    }
+    
+    // 首次播放时加载或在后台生成雪碧图，每个视频只请求一次
+    private void loadSeekPreview(Video video) {
+        if (seekPreviewRequestedId == video.getId()) {
+            return;
+        }
+        seekPreviewRequestedId = video.getId();
+        
+        SeekPreviewSprites.getInstance(this).load(video, sheet -> {
+            if (isDestroyed() || currentVideo == null || sheet.getVideoId() != currentVideo.getId()) {
+                return;
+            }
+            seekPreviewSheet = sheet;
+            
+            // 按帧的宽高比调整预览视图高度
+            ViewGroup.LayoutParams params = seekPreviewView.getLayoutParams();
+            if (params != null) {
+                params.height = params.width * sheet.getFrameHeight() / sheet.getFrameWidth();
+                seekPreviewView.setLayoutParams(params);
+            }
+        });
+    }
+    
+    // 显示离拖动位置最近的预览帧，fraction为拖动位置在进度条上的比例
+    private void showSeekPreview(long position, float fraction) {
+        if (seekPreviewSheet == null || seekPreviewView == null) {
+            return;
+        }
+        
+        seekPreviewDrawable.setFrame(seekPreviewSheet, position);
+        
+        // 预览图水平跟随手指，不超出屏幕
+        View parent = (View) seekPreviewView.getParent();
+        if (parent != null) {
+            float maxX = parent.getWidth() - seekPreviewView.getWidth();
+            float x = fraction * parent.getWidth() - seekPreviewView.getWidth() / 2f;
+            seekPreviewView.setTranslationX(Math.max(0, Math.min(maxX, x)));
+        }
+        seekPreviewView.setVisibility(View.VISIBLE);
+    }
+    
+    private void hideSeekPreview() {
+        if (seekPreviewView != null) {
+            seekPreviewView.setVisibility(View.GONE);
+        }
+    }
+
     private void loadVideo(int videoId) {
         executorService.execute(() -> {
             currentVideo = videoDao.getVideoById(videoId);
@@ -174,6 +262,10 @@ public class VideoPlayerActivity extends AppCompatActivity
     }
 
     private void initializePlayer(Video video) {
+        // 切换视频后旧的预览图不再可用
+        seekPreviewSheet = null;
+        hideSeekPreview();
+        
         // 创建轨道选择器
         trackSelector = new DefaultTrackSelector(this);
         trackSelector.setParameters(trackSelector.buildUponParameters().setMaxVideoSizeSd());
@@ -268,12 +360,14 @@ public class VideoPlayerActivity extends AppCompatActivity
                         // 恢复上次播放位置
                         executorService.execute(() -> {
                             Video updatedVideo = videoDao.getVideoById(video.getId());
-                            if (updatedVideo != null && updatedVideo.getLastPlayedPosition() > 0) {
+                            // 还没写入数据库的进度优先
+                            long lastPosition = updatedVideo != null ? positionStore.getPosition(updatedVideo) : 0;
+                            if (lastPosition > 0) {
                                 // 仅当上次位置在有效范围内时恢复
                                 long duration = player.getDuration();
-                                if (updatedVideo.getLastPlayedPosition() < duration - 10000) { // 距离结束10秒以上
+                                if (lastPosition < duration - 10000) { // 距离结束10秒以上
                                     runOnUiThread(() -> {
-                                        player.seekTo(updatedVideo.getLastPlayedPosition());
+                                        player.seekTo(lastPosition);
                                     });
                                 }
                             }
@@ -299,6 +393,9 @@ public class VideoPlayerActivity extends AppCompatActivity
                         
                         // 开始字幕处理
                         startSubtitleTracking();
+                        
+                        // 准备拖动预览图
+                        loadSeekPreview(video);
                     } else if (state == Player.STATE_BUFFERING) {
                         progressBar.setVisibility(View.VISIBLE);
                     } else if (state == Player.STATE_ENDED) {
@@ -452,6 +549,7 @@ public class VideoPlayerActivity extends AppCompatActivity
                             
                             // 手动触发时间条的拖动开始
                             timeBar.setPosition(position);
+                            showSeekPreview(position, fraction);
                             
                             // 更新时间文本
                             if (positionView != null) {
@@ -468,6 +566,7 @@ public class VideoPlayerActivity extends AppCompatActivity
                                 
                                 // 手动更新时间条位置
                                 timeBar.setPosition(position);
+                                showSeekPreview(position, fraction);
                                 
                                 // 更新时间文本
                                 if (positionView != null) {
@@ -483,6 +582,7 @@ public class VideoPlayerActivity extends AppCompatActivity
                             // 拖动结束
                             if (isScrubbing) {
                                 Log.d("VideoPlayerActivity", "ACTION_UP: " + formatDuration(position));
+                                hideSeekPreview();
                                 
                                 // 应用最终位置
                                 player.seekTo(position);
@@ -507,6 +607,7 @@ public class VideoPlayerActivity extends AppCompatActivity
                 // 开始拖动时暂停播放并记录状态
                 if (player != null) {
                     player.pause();
+                    showSeekPreview(position, scrubFraction(position));
                     Log.d("VideoPlayerActivity", "TimeBar开始拖动: " + formatDuration(position));
                 }
             }
@@ -518,12 +619,15 @@ public class VideoPlayerActivity extends AppCompatActivity
                     if (positionView != null) {
                         positionView.setText(formatDuration(position));
                     }
+                    // 只切换雪碧图中的帧，不让播放器跟随拖动反复定位
+                    showSeekPreview(position, scrubFraction(position));
                     Log.d("VideoPlayerActivity", "TimeBar拖动中: " + formatDuration(position));
                 }
             }
 
             @Override
             public void onScrubStop(androidx.media3.ui.TimeBar timeBar, long position, boolean canceled) {
+                hideSeekPreview();
                 if (player == null) return;
                 
                 Log.d("VideoPlayerActivity", "TimeBar结束拖动: " + formatDuration(position) + ", 取消: " + canceled);
@@ -551,6 +655,7 @@ public class VideoPlayerActivity extends AppCompatActivity
                 public void run() {
                     if (player != null && player.isPlaying()) {
                         // 更新时间文本
+                        updatePlaybackPosition(player.getCurrentPosition());
                         if (positionView != null && durationView != null) {
                             positionView.setText(formatDuration(player.getCurrentPosition()));
                             durationView.setText(formatDuration(player.getDuration()));
@@ -573,6 +678,11 @@ public class VideoPlayerActivity extends AppCompatActivity
         }
     }
 
+    private float scrubFraction(long position) {
+        long duration = player != null ? player.getDuration() : 0;
+        return duration > 0 ? (float) position / duration : 0f;
+    }
+
     private void setupSpeedControl() {
         RadioGroup speedGroup = binding.radioGroupSpeed;
         speedGroup.setOnCheckedChangeListener((group, checkedId) -> {
@@ -692,14 +802,19 @@ public class VideoPlayerActivity extends AppCompatActivity
         }
     }
 
+    // 只记录到内存，由PlaybackPositionStore合并后写入数据库
     private void updatePlaybackPosition(long position) {
         if (currentVideo != null) {
-            executorService.execute(() -> {
-                videoDao.updateLastPlayedPosition(currentVideo.getId(), position);
-            });
+            positionStore.record(currentVideo.getId(), position);
         }
     }
 
+    // 切换视频前结束当前视频：进度归零并立即写入
+    private void finishCurrentVideo() {
+        updatePlaybackPosition(0);
+        positionStore.flush();
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
@@ -711,6 +826,7 @@ public class VideoPlayerActivity extends AppCompatActivity
             // 暂停播放
             player.pause();
         }
+        positionStore.flush();
         
         // 停止字幕跟踪
         if (subtitleRunnable != null) {
@@ -766,7 +882,7 @@ public class VideoPlayerActivity extends AppCompatActivity
                 Video nextVideo = currentPlaylistVideos.get(currentIndex + 1);
                 
                 // 更新当前播放位置为0（结束播放）
-                updatePlaybackPosition(0);
+                finishCurrentVideo();
                 
                 // 切换到新视频
                 currentVideo = nextVideo;
@@ -795,7 +911,7 @@ public class VideoPlayerActivity extends AppCompatActivity
             
             if (nextVideo != null) {
                 // 更新当前播放位置为0（结束播放）
-                updatePlaybackPosition(0);
+                finishCurrentVideo();
                 
                 // 切换到新视频
                 currentVideo = nextVideo;
@@ -839,7 +955,7 @@ public class VideoPlayerActivity extends AppCompatActivity
                 Video prevVideo = currentPlaylistVideos.get(currentIndex - 1);
                 
                 // 更新当前播放位置为0（结束播放）
-                updatePlaybackPosition(0);
+                finishCurrentVideo();
                 
                 // 切换到新视频
                 currentVideo = prevVideo;
@@ -868,7 +984,7 @@ public class VideoPlayerActivity extends AppCompatActivity
             
             if (prevVideo != null) {
                 // 更新当前播放位置为0（结束播放）
-                updatePlaybackPosition(0);
+                finishCurrentVideo();
                 
                 // 切换到新视频
                 currentVideo = prevVideo;
@@ -933,7 +1049,7 @@ public class VideoPlayerActivity extends AppCompatActivity
         if (video != null) {
             // 更新当前播放位置为0（结束当前视频播放）
             if (currentVideo != null) {
-                updatePlaybackPosition(0);
+                finishCurrentVideo();
             }
             
             // 切换到选中的视频
@@ -953,6 +1069,14 @@ public class VideoPlayerActivity extends AppCompatActivity
         }
     }
 
+    @Override
+    public void onPlaylistReordered(int playlistId, List<Video> videos) {
+        // 上一个/下一个按调整后的顺序切换
+        if (playlistId == currentPlaylistId) {
+            currentPlaylistVideos = new ArrayList<>(videos);
+        }
+    }
+
     private void showSubtitleListDialog() {
         if (currentVideo != null) {
             SubtitleListDialogFragment dialogFragment = SubtitleListDialogFragment.newInstance(
@@ -3,6 +3,8 @@ package com.inf.myjavavideo.ui.playlists;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,11 +20,13 @@ import com.inf.myjavavideo.data.AppDatabase;
 import com.inf.myjavavideo.data.dao.PlaylistDao;
 import com.inf.myjavavideo.data.dao.PlaylistVideoDao;
 import com.inf.myjavavideo.data.model.Playlist;
+import com.inf.myjavavideo.data.model.PlaylistSummary;
 import com.inf.myjavavideo.data.model.PlaylistVideo;
-import com.inf.myjavavideo.data.model.Video;
 import com.inf.myjavavideo.databinding.FragmentPlaylistsBinding;
+import com.inf.myjavavideo.ui.adapters.PlaylistListAdapter;
 import com.inf.myjavavideo.ui.player.PlaylistDialogFragment;
 import com.inf.myjavavideo.ui.player.MediaPlayerActivity;
+import com.inf.myjavavideo.utils.PlaylistCovers;
 import com.inf.myjavavideo.utils.SessionManager;
 
 import java.util.ArrayList;
@@ -30,11 +34,6 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
-import android.widget.ArrayAdapter;
-import android.widget.TextView;
-import android.widget.ImageView;
-import com.bumptech.glide.Glide;
-import java.io.File;
 import android.util.Log;
 
 public class PlaylistsFragment extends Fragment {
@@ -44,8 +43,9 @@ public class PlaylistsFragment extends Fragment {
     private PlaylistDao playlistDao;
     private PlaylistVideoDao playlistVideoDao;
     private SessionManager sessionManager;
-    private List<Playlist> playlists = new ArrayList<>();
-    private PlaylistAdapter playlistAdapter;
+    private List<PlaylistSummary> playlists = new ArrayList<>();
+    private PlaylistListAdapter playlistAdapter;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -70,37 +70,48 @@ public class PlaylistsFragment extends Fragment {
         binding.fabCreatePlaylist.setOnClickListener(v -> showCreatePlaylistDialog());
         
         // 初始化适配器
-        playlistAdapter = new PlaylistAdapter(requireContext(), playlists);
+        playlistAdapter = new PlaylistListAdapter(requireContext(), playlists);
         binding.listPlaylists.setAdapter(playlistAdapter);
         
         // 设置播放列表点击事件
         binding.listPlaylists.setOnItemClickListener((parent, v, position, id) -> {
-            Playlist playlist = playlists.get(position);
+            PlaylistSummary playlist = playlists.get(position);
             openPlaylistDetails(playlist);
         });
         
         // 添加长按删除功能
         binding.listPlaylists.setOnItemLongClickListener((parent, v, position, id) -> {
-            Playlist playlist = playlists.get(position);
+            PlaylistSummary playlist = playlists.get(position);
             showDeletePlaylistDialog(playlist);
             return true; // 返回true表示消费了长按事件
         });
         
         // 加载播放列表
-        loadPlaylists();
+        observePlaylists();
     }
     
-    private void loadPlaylists() {
+    // 播放列表的增删、成员变化都会重新查询，不再在每次修改后手动刷新
+    private void observePlaylists() {
         int userId = sessionManager.getUserId();
         if (userId == -1) {
             Toast.makeText(requireContext(), "请先登录", Toast.LENGTH_SHORT).show();
             return;
         }
         
+        playlistDao.observePlaylistSummaries(userId).observe(getViewLifecycleOwner(), this::onPlaylistsChanged);
+    }
+    
+    // 后台任务执行时视图可能已销毁，先取出应用Context，回到主线程后再检查binding
+    private void onPlaylistsChanged(List<PlaylistSummary> userPlaylists) {
+        Context appContext = requireContext().getApplicationContext();
         executorService.execute(() -> {
-            final List<Playlist> userPlaylists = playlistDao.getPlaylistsByUserId(userId);
+            // 视频数量、总时长和封面已一次查好，缺少封面的播放列表在后台重新拼接
+            PlaylistCovers.getInstance(appContext).rebuildMissing(userPlaylists, this::onCoverReady);
             
-            requireActivity().runOnUiThread(() -> {
+            mainHandler.post(() -> {
+                if (binding == null) {
+                    return;
+                }
                 // 更新UI
                 updatePlaylists(userPlaylists);
                 
@@ -111,7 +122,13 @@ public class PlaylistsFragment extends Fragment {
         });
     }
     
-    private void updatePlaylists(List<Playlist> userPlaylists) {
+    private void onCoverReady(int playlistId, String coverPath) {
+        if (binding != null) {
+            playlistAdapter.onCoverReady(playlistId, coverPath);
+        }
+    }
+    
+    private void updatePlaylists(List<PlaylistSummary> userPlaylists) {
         playlists.clear();
         playlists.addAll(userPlaylists);
         playlistAdapter.notifyDataSetChanged();
@@ -151,8 +168,6 @@ public class PlaylistsFragment extends Fragment {
             requireActivity().runOnUiThread(() -> {
                 if (playlistId > 0) {
                     Toast.makeText(requireContext(), R.string.playlist_created, Toast.LENGTH_SHORT).show();
-                    // 重新加载播放列表
-                    loadPlaylists();
                 } else {
                     Toast.makeText(requireContext(), "创建播放列表失败", Toast.LENGTH_SHORT).show();
                 }
@@ -160,7 +175,7 @@ public class PlaylistsFragment extends Fragment {
         });
     }
     
-    private void openPlaylistDetails(Playlist playlist) {
+    private void openPlaylistDetails(PlaylistSummary playlist) {
         executorService.execute(() -> {
             // 获取播放列表中的第一个视频
             List<PlaylistVideo> playlistVideos = playlistVideoDao.getPlaylistVideos(playlist.getId());
@@ -197,7 +212,7 @@ public class PlaylistsFragment extends Fragment {
     /**
      * 显示删除播放列表确认对话框
      */
-    private void showDeletePlaylistDialog(Playlist playlist) {
+    private void showDeletePlaylistDialog(PlaylistSummary playlist) {
         new androidx.appcompat.app.AlertDialog.Builder(requireContext())
                 .setTitle("删除播放列表")
                 .setMessage("确定要删除播放列表 \"" + playlist.getName() + "\" 吗？此操作不可恢复。")
@@ -211,19 +226,18 @@ public class PlaylistsFragment extends Fragment {
     /**
      * 删除播放列表
      */
-    private void deletePlaylist(Playlist playlist) {
+    private void deletePlaylist(PlaylistSummary playlist) {
         executorService.execute(() -> {
             try {
                 // 先删除播放列表中的所有视频关联
                 playlistVideoDao.deleteByPlaylistId(playlist.getId());
                 
                 // 然后删除播放列表
-                playlistDao.delete(playlist);
+                playlistDao.deleteById(playlist.getId());
+                PlaylistCovers.delete(requireContext(), playlist.getId());
                 
                 requireActivity().runOnUiThread(() -> {
                     Toast.makeText(requireContext(), "播放列表已删除", Toast.LENGTH_SHORT).show();
-                    // 重新加载播放列表
-                    loadPlaylists();
                 });
             } catch (Exception e) {
                 Log.e("PlaylistsFragment", "删除播放列表失败: " + e.getMessage());
@@ -233,93 +247,4 @@ public class PlaylistsFragment extends Fragment {
             }
         });
     }
-
-    private class PlaylistAdapter extends ArrayAdapter<Playlist> {
-        
-        public PlaylistAdapter(Context context, List<Playlist> playlists) {
-            super(context, R.layout.item_playlist, playlists);
-        }
-        
-        @NonNull
-        @Override
-        public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-            if (convertView == null) {
-                convertView = LayoutInflater.from(getContext()).inflate(R.layout.item_playlist, parent, false);
-            }
-            
-            TextView nameTextView = convertView.findViewById(R.id.text_playlist_name);
-            TextView countTextView = convertView.findViewById(R.id.text_video_count);
-            ImageView thumbnailImageView = convertView.findViewById(R.id.image_playlist_thumbnail);
-            
-            Playlist playlist = getItem(position);
-            
-            if (playlist != null) {
-                nameTextView.setText(playlist.getName());
-                
-                // 获取播放列表中的视频数量
-                executorService.execute(() -> {
-                    int videoCount = playlistVideoDao.getPlaylistVideoCount(playlist.getId());
-                    
-                    requireActivity().runOnUiThread(() -> {
-                        countTextView.setText(videoCount + " 个视频");
-                    });
-                    
-                    // 获取播放列表中的第一个视频作为缩略图
-                    if (videoCount > 0 && (playlist.getThumbnailPath() == null || playlist.getThumbnailPath().isEmpty())) {
-                        try {
-                            List<Video> videos = playlistVideoDao.getVideosForPlaylist(playlist.getId());
-                            if (videos != null && !videos.isEmpty()) {
-                                Video firstVideo = videos.get(0);
-                                
-                                if (firstVideo.getThumbnailPath() != null && !firstVideo.getThumbnailPath().isEmpty()) {
-                                    // 使用第一个视频的缩略图
-                                    String thumbnailPath = firstVideo.getThumbnailPath();
-                                    
-                                    // 更新播放列表的缩略图路径
-                                    playlist.setThumbnailPath(thumbnailPath);
-                                    playlistDao.update(playlist);
-                                    
-                                    requireActivity().runOnUiThread(() -> {
-                                        // 加载缩略图
-                                        Glide.with(getContext())
-                                                .load(new File(thumbnailPath))
-                                                .placeholder(R.drawable.ic_video_placeholder)
-                                                .error(R.drawable.ic_video_placeholder)
-                                                .centerCrop()
-                                                .into(thumbnailImageView);
-                                    });
-                                } else {
-                                    // 尝试使用视频路径加载缩略图
-                                    String videoPath = firstVideo.getPath();
-                                    requireActivity().runOnUiThread(() -> {
-                                        // 直接尝试加载视频第一帧
-                                        Glide.with(getContext())
-                                                .load(videoPath)
-                                                .placeholder(R.drawable.ic_video_placeholder)
-                                                .error(R.drawable.ic_video_placeholder)
-                                                .centerCrop()
-                                                .into(thumbnailImageView);
-                                    });
-                                }
-                            }
-                        } catch (Exception e) {
-                            Log.e("PlaylistsFragment", "加载播放列表缩略图失败: " + e.getMessage());
-                        }
-                    } else if (playlist.getThumbnailPath() != null && !playlist.getThumbnailPath().isEmpty()) {
-                        // 已有缩略图，直接加载
-                        requireActivity().runOnUiThread(() -> {
-                            Glide.with(getContext())
-                                    .load(new File(playlist.getThumbnailPath()))
-                                    .placeholder(R.drawable.ic_video_placeholder)
-                                    .error(R.drawable.ic_video_placeholder)
-                                    .centerCrop()
-                                    .into(thumbnailImageView);
-                        });
-                    }
-                });
-            }
-            
-            return convertView;
-        }
-    }
 } 
\ No newline at end of file
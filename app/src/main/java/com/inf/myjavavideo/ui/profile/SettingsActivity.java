@@ -10,7 +10,10 @@ import androidx.appcompat.app.AppCompatDelegate;
 
 import com.inf.myjavavideo.R;
 import com.inf.myjavavideo.databinding.ActivitySettingsBinding;
+import com.inf.myjavavideo.utils.MediaStoreHelper;
 import com.inf.myjavavideo.utils.SessionManager;
+import com.inf.myjavavideo.utils.ThumbnailCache;
+import com.inf.myjavavideo.utils.ThumbnailStore;
 
 public class SettingsActivity extends AppCompatActivity {
 
@@ -53,8 +56,14 @@ public class SettingsActivity extends AppCompatActivity {
         });
         
         binding.buttonClearCache.setOnClickListener(v -> {
-            // 清除缓存的逻辑
-            Toast.makeText(this, "缓存已清除", Toast.LENGTH_SHORT).show();
+            // 清除缩略图文件及内存、磁盘中的缩放版本
+            binding.buttonClearCache.setEnabled(false);
+            ThumbnailCache.clearMemory(this);
+            ThumbnailStore.getInstance(this).clearAsync(() -> {
+                binding.buttonClearCache.setEnabled(true);
+                Toast.makeText(this, "缓存已清除", Toast.LENGTH_SHORT).show();
+                loadThumbnailStats();
+            });
         });
         
         binding.buttonAbout.setOnClickListener(v -> {
@@ -72,6 +81,20 @@ public class SettingsActivity extends AppCompatActivity {
         binding.switchDarkMode.setChecked(sessionManager.isDarkModeEnabled());
         binding.switchAutoPlay.setChecked(sessionManager.isAutoPlayEnabled());
         binding.switchNotifications.setChecked(sessionManager.isNotificationsEnabled());
+        loadThumbnailStats();
+    }
+    
+    // 显示缩略图占用的空间
+    private void loadThumbnailStats() {
+        ThumbnailStore.getInstance(this).getStatsAsync(stats -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
+            binding.textThumbnailStorage.setText(getString(R.string.thumbnail_storage,
+                    stats.fileCount,
+                    MediaStoreHelper.formatFileSize(stats.totalBytes),
+                    MediaStoreHelper.formatFileSize(stats.quotaBytes)));
+        });
     }
     
     private void setDarkMode(boolean enabled) {
@@ -5,7 +5,10 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 import android.text.format.Formatter;
+import android.util.Log;
+import android.util.LruCache;
 import android.view.LayoutInflater;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
@@ -13,6 +16,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.DividerItemDecoration;
@@ -20,22 +24,40 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.inf.myjavavideo.R;
+import com.inf.myjavavideo.data.AppDatabase;
+import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.Video;
 import com.inf.myjavavideo.databinding.ActivityFileBrowserBinding;
+import com.inf.myjavavideo.utils.FolderScanner;
+import com.inf.myjavavideo.utils.ThumbnailPipeline;
+import com.inf.myjavavideo.utils.VideoFingerprint;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class FileBrowserActivity extends AppCompatActivity {
 
+    private static final int MENU_SCAN_TREE = 1;
+
     private ActivityFileBrowserBinding binding;
     private FileAdapter adapter;
     private File currentDirectory;
     private String rootPath;
-    private final List<File> fileList = new ArrayList<>();
+    private final List<FileEntry> fileList = new ArrayList<>();
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    // 统计文件夹项目数的线程池和结果缓存
+    private final ExecutorService countExecutor = Executors.newFixedThreadPool(2);
+    private final LruCache<String, Integer> itemCountCache = new LruCache<>(1000);
+    private final Set<String> pendingCounts = new HashSet<>();
+    private int loadGeneration;
+    private FolderScanner folderScanner;
+    private AlertDialog scanProgressDialog;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -69,77 +91,215 @@ public class FileBrowserActivity extends AppCompatActivity {
 
     private void loadFiles(String path) {
         binding.progressBar.setVisibility(View.VISIBLE);
-        fileList.clear();
         
         File directory = new File(path);
         currentDirectory = directory;
         binding.textCurrentPath.setText(path);
+        int generation = ++loadGeneration;
 
-        // 检查是否可以返回上一级目录
-        if (!path.equals(rootPath)) {
+        // 在后台线程列出和排序文件，避免慢速SD卡阻塞主线程
+        executorService.execute(() -> {
+            List<FileEntry> entries = new ArrayList<>();
+            
+            // 检查是否可以返回上一级目录
             File parentFile = directory.getParentFile();
-            if (parentFile != null) {
-                fileList.add(parentFile); // 添加父目录
+            if (!path.equals(rootPath) && parentFile != null) {
+                entries.add(new FileEntry(parentFile, true)); // 添加父目录
             }
-        }
 
-        // 获取当前目录下的所有文件和文件夹
-        File[] files = directory.listFiles();
-        if (files != null) {
-            // 筛选和排序文件
-            List<File> sortedFiles = Arrays.asList(files);
-            Collections.sort(sortedFiles, new Comparator<File>() {
-                @Override
-                public int compare(File f1, File f2) {
+            // 获取当前目录下的所有文件和文件夹
+            File[] files = directory.listFiles();
+            if (files != null) {
+                List<FileEntry> children = new ArrayList<>();
+                for (File file : files) {
+                    // 忽略隐藏文件
+                    if (file.isHidden()) {
+                        continue;
+                    }
+                    // 如果是目录或视频文件，则添加到列表
+                    boolean isDirectory = file.isDirectory();
+                    if (isDirectory || isVideoFile(file.getName())) {
+                        children.add(new FileEntry(file, isDirectory));
+                    }
+                }
+                
+                // 排序时使用已读取的属性，不再重复访问文件系统
+                Collections.sort(children, (e1, e2) -> {
                     // 文件夹排在前面
-                    if (f1.isDirectory() && !f2.isDirectory()) {
-                        return -1;
-                    } else if (!f1.isDirectory() && f2.isDirectory()) {
-                        return 1;
+                    if (e1.isDirectory != e2.isDirectory) {
+                        return e1.isDirectory ? -1 : 1;
                     }
                     // 按名称排序
-                    return f1.getName().compareToIgnoreCase(f2.getName());
+                    return e1.file.getName().compareToIgnoreCase(e2.file.getName());
+                });
+                entries.addAll(children);
+            }
+
+            runOnUiThread(() -> {
+                // 忽略已经过期的加载结果
+                if (generation != loadGeneration || isFinishing()) {
+                    return;
                 }
+                fileList.clear();
+                fileList.addAll(entries);
+                
+                // 更新UI
+                binding.progressBar.setVisibility(View.GONE);
+                adapter.notifyDataSetChanged();
+
+                // 显示空文件夹信息
+                boolean isEmpty = fileList.isEmpty() || (fileList.size() == 1 && fileList.get(0).file.equals(parentFile));
+                binding.textEmpty.setVisibility(isEmpty ? View.VISIBLE : View.GONE);
+                binding.textEmpty.setText(R.string.no_video_files);
             });
+        });
+    }
 
-            for (File file : sortedFiles) {
-                // 忽略隐藏文件
-                if (!file.isHidden()) {
-                    // 如果是目录或视频文件，则添加到列表
-                    if (file.isDirectory() || isVideoFile(file.getName())) {
-                        fileList.add(file);
+    // 文件夹项目数的缓存键，文件夹内容变化时lastModified随之变化，旧缓存自动失效
+    private static String countCacheKey(FileEntry entry) {
+        return entry.file.getAbsolutePath() + "@" + entry.lastModified;
+    }
+
+    // 在后台统计文件夹中的项目数，完成后刷新对应的行
+    private void requestItemCount(FileEntry entry) {
+        String key = countCacheKey(entry);
+        if (!pendingCounts.add(key)) {
+            return;
+        }
+        countExecutor.execute(() -> {
+            File[] files = entry.file.listFiles();
+            int count = files != null ? files.length : 0;
+            runOnUiThread(() -> {
+                pendingCounts.remove(key);
+                itemCountCache.put(key, count);
+                for (int i = 0; i < fileList.size(); i++) {
+                    if (fileList.get(i) == entry) {
+                        adapter.notifyItemChanged(i);
+                        break;
                     }
                 }
-            }
+            });
+        });
+    }
+
+    private boolean isVideoFile(String fileName) {
+        return FolderScanner.isVideoFile(fileName);
+    }
+
+    // 递归扫描当前文件夹，边扫描边显示进度，结束后批量导入
+    private void scanCurrentFolderTree() {
+        if (folderScanner != null) {
+            return;
         }
+        
+        List<File> foundVideos = new ArrayList<>();
+        TextView progressText = new TextView(this);
+        int padding = (int) (24 * getResources().getDisplayMetrics().density);
+        progressText.setPadding(padding, padding / 2, padding, 0);
+        progressText.setText(getString(R.string.scan_progress, 0, 0));
+        
+        scanProgressDialog = new AlertDialog.Builder(this)
+                .setTitle(R.string.scanning_folder)
+                .setView(progressText)
+                .setCancelable(false)
+                .setNegativeButton(R.string.cancel, (dialog, which) -> {
+                    if (folderScanner != null) {
+                        folderScanner.cancel();
+                    }
+                })
+                .show();
+        
+        folderScanner = new FolderScanner(new FolderScanner.Callback() {
+            @Override
+            public void onVideosFound(List<File> videos) {
+                foundVideos.addAll(videos);
+            }
 
-        // 更新UI
-        binding.progressBar.setVisibility(View.GONE);
-        adapter.notifyDataSetChanged();
+            @Override
+            public void onProgress(int scannedDirectories, int foundFiles) {
+                progressText.setText(getString(R.string.scan_progress, scannedDirectories, foundFiles));
+            }
 
-        // 显示空文件夹信息
-        boolean isEmpty = fileList.isEmpty() || (fileList.size() == 1 && fileList.get(0).equals(directory.getParentFile()));
-        binding.textEmpty.setVisibility(isEmpty ? View.VISIBLE : View.GONE);
-        binding.textEmpty.setText(R.string.no_video_files);
+            @Override
+            public void onComplete(int foundFiles, boolean cancelled) {
+                folderScanner = null;
+                // 扫描期间Activity可能已销毁（如旋转屏幕），对话框已在onDestroy中关闭
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                scanProgressDialog.dismiss();
+                scanProgressDialog = null;
+                if (cancelled) {
+                    return;
+                }
+                if (foundVideos.isEmpty()) {
+                    Toast.makeText(FileBrowserActivity.this, R.string.no_video_files, Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                importScannedVideos(foundVideos);
+            }
+        });
+        folderScanner.scan(currentDirectory);
     }
-
-    private boolean isVideoFile(String fileName) {
-        try {
-            if (fileName == null || !fileName.contains(".")) {
-                return false;
+    
+    // 批量导入扫描到的视频，在一个事务内完成
+    private void importScannedVideos(List<File> files) {
+        binding.progressBar.setVisibility(View.VISIBLE);
+        executorService.execute(() -> {
+            List<Video> videos = new ArrayList<>();
+            // 与其他来源一致，添加时间以毫秒保存
+            long now = System.currentTimeMillis();
+            for (File file : files) {
+                Video video = new Video();
+                video.setTitle(file.getName());
+                video.setPath(file.getAbsolutePath());
+                video.setSize(file.length());
+                video.setDateAdded(now);
+                video.setSourceType("file");
+                videos.add(video);
             }
-            String[] videoExtensions = {"mp4", "mkv", "mov", "avi", "flv", "wmv", "3gp", "webm"};
-            String ext = fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
-            for (String videoExt : videoExtensions) {
-                if (ext.equals(videoExt)) {
-                    return true;
+            
+            try {
+                VideoDao videoDao = AppDatabase.getInstance(this).videoDao();
+                // 库中还没有的路径计算内容指纹，同一文件已通过content URI等其他路径导入时由upsertAll合并
+                Set<String> knownPaths = new HashSet<>();
+                for (int i = 0; i < videos.size(); i += 500) {
+                    List<String> paths = new ArrayList<>();
+                    for (Video video : videos.subList(i, Math.min(i + 500, videos.size()))) {
+                        paths.add(video.getPath());
+                    }
+                    for (Video existing : videoDao.getVideosByPaths(paths)) {
+                        knownPaths.add(existing.getPath());
+                    }
                 }
+                for (Video video : videos) {
+                    if (!knownPaths.contains(video.getPath())) {
+                        video.setFingerprint(VideoFingerprint.compute(this, video.getPath()));
+                    }
+                }
+                
+                videoDao.upsertAll(videos);
+                ThumbnailPipeline pipeline = ThumbnailPipeline.getInstance(this);
+                for (Video video : videos) {
+                    if (video.getThumbnailPath() == null || video.getThumbnailPath().isEmpty()) {
+                        pipeline.enqueue(video, ThumbnailPipeline.PRIORITY_BACKGROUND);
+                    }
+                }
+                
+                runOnUiThread(() -> {
+                    Intent resultIntent = new Intent();
+                    resultIntent.putExtra("IMPORTED_COUNT", videos.size());
+                    setResult(Activity.RESULT_OK, resultIntent);
+                    finish();
+                });
+            } catch (Exception e) {
+                Log.e("FileBrowserActivity", "批量导入失败: " + e.getMessage());
+                runOnUiThread(() -> {
+                    binding.progressBar.setVisibility(View.GONE);
+                    Toast.makeText(this, "导入视频失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                });
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
-        return false;
+        });
     }
 
     private void onFileClick(File file) {
@@ -160,31 +320,7 @@ public class FileBrowserActivity extends AppCompatActivity {
                     return;
                 }
                 
-                // 获取视频时长
-                long duration = 0;
-                try {
-                    android.media.MediaMetadataRetriever retriever = new android.media.MediaMetadataRetriever();
-                    retriever.setDataSource(file.getAbsolutePath());
-                    String durationStr = retriever.extractMetadata(android.media.MediaMetadataRetriever.METADATA_KEY_DURATION);
-                    if (durationStr != null) {
-                        duration = Long.parseLong(durationStr);
-                    }
-                    retriever.release();
-                    
-                    // 如果获取时长失败，尝试使用MediaPlayer
-                    if (duration == 0) {
-                        android.media.MediaPlayer mp = new android.media.MediaPlayer();
-                        mp.setDataSource(file.getAbsolutePath());
-                        mp.prepare();
-                        duration = mp.getDuration();
-                        mp.release();
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    // 获取时长失败，但仍然继续导入视频
-                    Toast.makeText(this, "无法获取视频时长: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-                
+                // 时长等元数据由导入方在后台统一读取，避免在主线程打开视频
                 // 使用FileProvider获取URI（处理Android 7.0+的FileUriExposedException）
                 Uri fileUri = Uri.fromFile(file);
                 Intent resultIntent = new Intent();
@@ -194,7 +330,6 @@ public class FileBrowserActivity extends AppCompatActivity {
                 resultIntent.putExtra("FILE_PATH", file.getAbsolutePath());
                 resultIntent.putExtra("FILE_NAME", file.getName());
                 resultIntent.putExtra("FILE_SIZE", file.length());
-                resultIntent.putExtra("FILE_DURATION", duration);
                 
                 // 设置结果并关闭Activity
                 setResult(Activity.RESULT_OK, resultIntent);
@@ -206,15 +341,39 @@ public class FileBrowserActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(Menu.NONE, MENU_SCAN_TREE, Menu.NONE, R.string.scan_folder_tree)
+                .setShowAsAction(MenuItem.SHOW_AS_ACTION_IF_ROOM);
+        return true;
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
             onBackPressed();
             return true;
+        } else if (item.getItemId() == MENU_SCAN_TREE) {
+            scanCurrentFolderTree();
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (folderScanner != null) {
+            folderScanner.cancel();
+        }
+        if (scanProgressDialog != null) {
+            scanProgressDialog.dismiss();
+            scanProgressDialog = null;
+        }
+        executorService.shutdown();
+        countExecutor.shutdownNow();
+    }
+
     @Override
     public void onBackPressed() {
         // 如果不是根目录，返回上一级
@@ -237,7 +396,8 @@ public class FileBrowserActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull FileViewHolder holder, int position) {
-            File file = fileList.get(position);
+            FileEntry entry = fileList.get(position);
+            File file = entry.file;
             
             // 设置文件名
             String fileName = file.getName();
@@ -249,7 +409,7 @@ public class FileBrowserActivity extends AppCompatActivity {
                 holder.fileNameTextView.setCompoundDrawablesWithIntrinsicBounds(
                         ContextCompat.getDrawable(FileBrowserActivity.this, R.drawable.ic_arrow_up),
                         null, null, null);
-            } else if (file.isDirectory()) {
+            } else if (entry.isDirectory) {
                 // 设置文件夹图标
                 holder.fileNameTextView.setCompoundDrawablesWithIntrinsicBounds(
                         ContextCompat.getDrawable(FileBrowserActivity.this, R.drawable.ic_folder),
@@ -264,14 +424,18 @@ public class FileBrowserActivity extends AppCompatActivity {
             holder.fileNameTextView.setText(fileName);
             
             // 设置文件信息
-            if (file.isDirectory()) {
-                // 获取文件夹中的文件数量
-                File[] files = file.listFiles();
-                int count = files != null ? files.length : 0;
-                holder.fileInfoTextView.setText(getString(R.string.items_count, count));
+            if (entry.isDirectory) {
+                // 只读取缓存的项目数，未缓存时在后台统计
+                Integer count = itemCountCache.get(countCacheKey(entry));
+                if (count != null) {
+                    holder.fileInfoTextView.setText(getString(R.string.items_count, count));
+                } else {
+                    holder.fileInfoTextView.setText("…");
+                    requestItemCount(entry);
+                }
             } else {
                 // 格式化文件大小
-                String fileSize = Formatter.formatFileSize(FileBrowserActivity.this, file.length());
+                String fileSize = Formatter.formatFileSize(FileBrowserActivity.this, entry.length);
                 holder.fileInfoTextView.setText(fileSize);
             }
             
@@ -295,4 +459,19 @@ public class FileBrowserActivity extends AppCompatActivity {
             }
         }
     }
-} 
\ No newline at end of file
+
+    // 列表项，缓存后台读取的文件属性，绑定时不再访问文件系统
+    private static class FileEntry {
+        final File file;
+        final boolean isDirectory;
+        final long length;
+        final long lastModified;
+
+        FileEntry(File file, boolean isDirectory) {
+            this.file = file;
+            this.isDirectory = isDirectory;
+            this.length = isDirectory ? 0 : file.length();
+            this.lastModified = file.lastModified();
+        }
+    }
+} 
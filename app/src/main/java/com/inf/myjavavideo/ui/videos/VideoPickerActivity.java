@@ -1,11 +1,13 @@
 package com.inf.myjavavideo.ui.videos;
 
+import android.content.ContentUris;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.util.Log;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
@@ -21,6 +23,8 @@ import com.inf.myjavavideo.data.dao.VideoDao;
 import com.inf.myjavavideo.data.model.Video;
 import com.inf.myjavavideo.databinding.ActivityVideoPickerBinding;
 import com.inf.myjavavideo.ui.adapters.VideoCardAdapter;
+import com.inf.myjavavideo.utils.ThumbnailPipeline;
+import com.inf.myjavavideo.utils.VideoFingerprint;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -29,6 +33,8 @@ import java.util.concurrent.Executors;
 
 public class VideoPickerActivity extends AppCompatActivity implements VideoCardAdapter.OnVideoClickListener {
 
+    private static final int MENU_IMPORT_ALL = 1;
+
     private ActivityVideoPickerBinding binding;
     private ExecutorService executorService;
     private VideoDao videoDao;
@@ -84,6 +90,7 @@ public class VideoPickerActivity extends AppCompatActivity implements VideoCardA
             
             try (Cursor cursor = getContentResolver().query(uri, projection, null, null, sortOrder)) {
                 if (cursor != null) {
+                    int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media._ID);
                     int pathColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATA);
                     int titleColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.TITLE);
                     int durationColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DURATION);
@@ -101,8 +108,10 @@ public class VideoPickerActivity extends AppCompatActivity implements VideoCardA
                         video.setTitle(title);
                         video.setPath(path);
                         video.setDuration(duration);
-                        video.setDateAdded(dateAdded);
+                        // 媒体库的DATE_ADDED以秒为单位，库中统一保存毫秒
+                        video.setDateAdded(dateAdded * 1000);
                         video.setSize(size);
+                        video.setMediaStoreId(cursor.getLong(idColumn));
                         
                         deviceVideos.add(video);
                     }
@@ -134,6 +143,15 @@ public class VideoPickerActivity extends AppCompatActivity implements VideoCardA
             // 检查视频是否已经存在
             Video existingVideo = videoDao.getVideoByPath(video.getPath());
             
+            // 同一文件可能已通过content URI或其他路径导入，路径未命中时按内容指纹识别
+            String fingerprint = null;
+            if (existingVideo == null) {
+                fingerprint = VideoFingerprint.compute(this, video.getPath());
+                if (fingerprint != null) {
+                    existingVideo = videoDao.getVideoByFingerprint(fingerprint);
+                }
+            }
+            
             if (existingVideo == null) {
                 try {
                     // 将文件路径转换为content URI
@@ -159,8 +177,9 @@ public class VideoPickerActivity extends AppCompatActivity implements VideoCardA
                         video.setSourceType("file");
                     }
                     
-                    // 保存到数据库
-                    long videoId = videoDao.insert(video);
+                    // 保存到数据库，转换后的content URI可能已在库中，按路径合并
+                    video.setFingerprint(fingerprint);
+                    videoDao.upsert(video);
                     
                     runOnUiThread(() -> {
                         Toast.makeText(this, "视频已添加到库中", Toast.LENGTH_SHORT).show();
@@ -183,6 +202,64 @@ public class VideoPickerActivity extends AppCompatActivity implements VideoCardA
         });
     }
     
+    // 将设备上列出的所有视频一次性导入库中，使用批量upsert在一个事务内完成
+    private void importAllVideos() {
+        if (videoList.isEmpty()) {
+            return;
+        }
+        binding.progressBar.setVisibility(View.VISIBLE);
+        List<Video> snapshot = new ArrayList<>(videoList);
+        
+        executorService.execute(() -> {
+            List<Video> toImport = new ArrayList<>();
+            for (Video deviceVideo : snapshot) {
+                Video video = new Video();
+                video.setTitle(deviceVideo.getTitle());
+                video.setDuration(deviceVideo.getDuration());
+                video.setDateAdded(deviceVideo.getDateAdded());
+                video.setSize(deviceVideo.getSize());
+                video.setMediaStoreId(deviceVideo.getMediaStoreId());
+                
+                // 与媒体库同步使用同一路径约定：保存文件路径，媒体库ID用于匹配已同步的记录；
+                // 没有文件路径时才使用content URI
+                if (deviceVideo.getPath() != null) {
+                    video.setPath(deviceVideo.getPath());
+                    video.setSourceType("file");
+                } else {
+                    Uri contentUri = ContentUris.withAppendedId(
+                            MediaStore.Video.Media.EXTERNAL_CONTENT_URI, deviceVideo.getMediaStoreId());
+                    video.setPath(contentUri.toString());
+                    video.setSourceType("content");
+                }
+                toImport.add(video);
+            }
+            
+            try {
+                videoDao.upsertAll(toImport);
+                
+                ThumbnailPipeline pipeline = ThumbnailPipeline.getInstance(this);
+                for (Video video : toImport) {
+                    if (video.getThumbnailPath() == null || video.getThumbnailPath().isEmpty()) {
+                        pipeline.enqueue(video, ThumbnailPipeline.PRIORITY_BACKGROUND);
+                    }
+                }
+                
+                runOnUiThread(() -> {
+                    binding.progressBar.setVisibility(View.GONE);
+                    Toast.makeText(this, "已导入" + toImport.size() + "个视频", Toast.LENGTH_SHORT).show();
+                    setResult(RESULT_OK);
+                    finish();
+                });
+            } catch (Exception e) {
+                Log.e("VideoPickerActivity", "批量导入视频失败: " + e.getMessage());
+                runOnUiThread(() -> {
+                    binding.progressBar.setVisibility(View.GONE);
+                    Toast.makeText(this, "导入视频失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                });
+            }
+        });
+    }
+    
     // 尝试将文件路径转换为content URI
     private Uri getContentUriFromPath(String filePath) {
         Uri contentUri = null;
@@ -219,11 +296,21 @@ public class VideoPickerActivity extends AppCompatActivity implements VideoCardA
         return contentUri;
     }
     
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(Menu.NONE, MENU_IMPORT_ALL, Menu.NONE, R.string.import_all_videos)
+                .setShowAsAction(MenuItem.SHOW_AS_ACTION_IF_ROOM);
+        return true;
+    }
+    
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
             finish();
             return true;
+        } else if (item.getItemId() == MENU_IMPORT_ALL) {
+            importAllVideos();
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -5,8 +5,6 @@ import android.app.Activity;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
-import android.media.MediaPlayer;
-import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -27,21 +25,29 @@ import androidx.appcompat.widget.SearchView;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
-import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.DiffUtil;
 
 import com.inf.myjavavideo.R;
 import com.inf.myjavavideo.data.AppDatabase;
 import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.ImportJob;
 import com.inf.myjavavideo.data.model.Video;
 import com.inf.myjavavideo.databinding.FragmentVideosBinding;
 import com.inf.myjavavideo.ui.adapters.VideoGridAdapter;
+import com.inf.myjavavideo.ui.adapters.VideoPager;
 import com.inf.myjavavideo.ui.player.MediaPlayerActivity;
-import com.inf.myjavavideo.utils.MediaStoreHelper;
+import com.inf.myjavavideo.utils.ContentUriValidator;
+import com.inf.myjavavideo.utils.ImportQueue;
+import com.inf.myjavavideo.utils.MediaStoreObserver;
+import com.inf.myjavavideo.utils.ThumbnailStore;
+import com.inf.myjavavideo.utils.VideoSearch;
 
 import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -56,7 +62,23 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
     private ExecutorService executorService;
     private VideoDao videoDao;
     private VideoGridAdapter videosAdapter;
+    private VideoPager videoPager;
     private List<Video> videoList = new ArrayList<>();
+    private boolean isSearching;
+    // 搜索结果中字幕命中的第一个时间点，点击时从该处开始播放
+    private final Map<Integer, Long> searchCueTimes = new HashMap<>();
+    private boolean unavailableNoticeShown;
+    private final ImportQueue.OnImportProgressListener importProgressListener = new ImportQueue.OnImportProgressListener() {
+        @Override
+        public void onProgress(ImportQueue.Progress progress) {
+            onImportProgress(progress);
+        }
+
+        @Override
+        public void onJobFinished(ImportJob job, Video video) {
+            onImportJobFinished(job, video);
+        }
+    };
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -82,6 +104,9 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
         binding.fabAddVideo.setOnClickListener(v -> checkPermissionsAndShowOptions());
         
         loadVideos();
+        
+        // 导入在后台队列中进行，这里只显示进度和结果
+        ImportQueue.getInstance(requireContext()).addListener(importProgressListener);
     }
 
     private void checkPermissionsAndShowOptions() {
@@ -127,6 +152,14 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
     private void setupRecyclerView() {
         videosAdapter = new VideoGridAdapter(requireContext(), videoList, this);
         binding.recyclerVideos.setAdapter(videosAdapter);
+        
+        // 按标题分页加载，滚动到已加载末尾附近时加载下一页
+        videoPager = new VideoPager(videoDao, VideoPager.Order.TITLE, executorService, this::onPageLoaded);
+        binding.recyclerVideos.addOnScrollListener(videoPager);
+        
+        // 媒体库同步、导入和删除都会修改videos表，由表变化驱动列表刷新，不再手动重新加载
+        videoPager.observeChanges(getViewLifecycleOwner(),
+                AppDatabase.getInstance(requireContext()).getInvalidationTracker());
     }
     
     private void setupSearchView() {
@@ -154,93 +187,81 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
     }
 
     private void loadVideos() {
-        executorService.execute(() -> {
-            // 只加载数据库中已有的视频，不再自动导入设备中的所有视频
-            final List<Video> videos = videoDao.getAllVideos();
-            
-            // 检查数据库中的content URI视频是否可访问，移除不可访问的视频
-            checkAndCleanContentUris(videos);
-            
-            requireActivity().runOnUiThread(() -> {
-                updateVideos(videos);
-                
-                // 检查是否有视频
-                binding.textNoVideos.setVisibility(
-                        videos.isEmpty() ? View.VISIBLE : View.GONE);
-            });
-        });
+        if (binding == null) {
+            return;
+        }
+        isSearching = false;
+        searchCueTimes.clear();
+        // 只加载数据库中已有的视频，首屏只查询一页
+        binding.recyclerVideos.removeOnScrollListener(videoPager);
+        binding.recyclerVideos.addOnScrollListener(videoPager);
+        videoPager.refresh();
     }
     
-    // 检查并清理不可访问的content URI
-    private void checkAndCleanContentUris(List<Video> videos) {
-        List<Video> invalidVideos = new ArrayList<>();
-        
-        for (Video video : videos) {
-            if (video.getPath() != null && video.getPath().startsWith("content://") 
-                    && "content".equals(video.getSourceType())) {
-                try {
-                    Uri uri = Uri.parse(video.getPath());
-                    
-                    // 尝试获取持久权限
-                    try {
-                        requireContext().getContentResolver().takePersistableUriPermission(
-                                uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
-                    } catch (SecurityException e) {
-                        Log.w("VideosFragment", "无法获取持久权限: " + e.getMessage());
-                    }
-                    
-                    // 尝试检查URI是否可访问
-                    boolean isAccessible = false;
-                    try {
-                        // 使用openInputStream检查URI是否可访问
-                        InputStream stream = requireContext().getContentResolver().openInputStream(uri);
-                        if (stream != null) {
-                            stream.close();
-                            isAccessible = true;
-                        }
-                    } catch (Exception e) {
-                        Log.e("VideosFragment", "URI不可访问: " + uri + ", 错误: " + e.getMessage());
-                    }
-                    
-                    if (!isAccessible) {
-                        invalidVideos.add(video);
-                        Log.d("VideosFragment", "标记无效URI: " + video.getPath());
-                    }
-                } catch (Exception e) {
-                    invalidVideos.add(video);
-                    Log.e("VideosFragment", "处理URI出错: " + video.getPath() + ", 错误: " + e.getMessage());
-                }
-            }
+    private void onPageLoaded(List<Video> page, boolean firstPage, @Nullable DiffUtil.DiffResult diff) {
+        if (binding == null || isSearching) {
+            return;
+        }
+        if (diff != null) {
+            // 表变化后重新加载，只刷新有变化的条目
+            videoList.clear();
+            videoList.addAll(page);
+            diff.dispatchUpdatesTo(videosAdapter);
+        } else if (firstPage) {
+            updateVideos(page);
+        } else if (!page.isEmpty()) {
+            int start = videoList.size();
+            videoList.addAll(page);
+            videosAdapter.notifyItemRangeInserted(start, page.size());
         }
         
-        // 如果有无效的视频，显示提示并提供重新导入选项
-        if (!invalidVideos.isEmpty()) {
-            for (Video video : invalidVideos) {
-                videos.remove(video);
-                
-                // 从数据库中删除
-                try {
-                    videoDao.delete(video);
-                    Log.d("VideosFragment", "已删除无效视频: " + video.getTitle());
-                } catch (Exception e) {
-                    Log.e("VideosFragment", "删除视频失败: " + e.getMessage());
-                }
+        // 检查是否有视频
+        binding.textNoVideos.setVisibility(
+                videoList.isEmpty() ? View.VISIBLE : View.GONE);
+        
+        // 列表先显示，再在后台检查content URI是否仍可访问，已检查过的结果走缓存
+        validateContentUris(videoList);
+    }
+    
+    // 后台检查content URI，无法访问的视频只做标记，不删除
+    private void validateContentUris(List<Video> videos) {
+        ContentUriValidator.validateAsync(requireContext(), videos, unavailableVideoIds -> {
+            if (binding == null) {
+                return;
             }
+            videosAdapter.setUnavailableVideoIds(unavailableVideoIds);
             
-            // 在UI线程显示提示
-            requireActivity().runOnUiThread(() -> {
-                Toast.makeText(requireContext(), 
-                        "已移除" + invalidVideos.size() + "个无法访问的视频", 
+            if (!unavailableVideoIds.isEmpty() && !unavailableNoticeShown) {
+                unavailableNoticeShown = true;
+                Toast.makeText(requireContext(),
+                        unavailableVideoIds.size() + "个视频暂时无法访问，长按搜索框可清理",
                         Toast.LENGTH_LONG).show();
-            });
-        }
+            }
+        });
     }
     
     private void searchVideos(String query) {
+        isSearching = true;
+        // 搜索结果一次显示，暂停分页
+        binding.recyclerVideos.removeOnScrollListener(videoPager);
         executorService.execute(() -> {
-            List<Video> searchResults = videoDao.searchVideos(query);
+            // 全文搜索标题和字幕，结果已按相关度排序
+            List<VideoSearch.Result> results = VideoSearch.getInstance(requireContext()).searchVideos(query);
+            List<Video> searchResults = new ArrayList<>();
+            Map<Integer, Long> cueTimes = new HashMap<>();
+            for (VideoSearch.Result result : results) {
+                searchResults.add(result.video);
+                if (!result.cueTimes.isEmpty()) {
+                    cueTimes.put(result.video.getId(), result.cueTimes.get(0));
+                }
+            }
             
             requireActivity().runOnUiThread(() -> {
+                if (binding == null || !isSearching) {
+                    return;
+                }
+                searchCueTimes.clear();
+                searchCueTimes.putAll(cueTimes);
                 updateVideos(searchResults);
                 
                 // 检查是否有搜索结果
@@ -262,6 +283,35 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
         videosAdapter.notifyDataSetChanged();
     }
     
+    private void onImportProgress(ImportQueue.Progress progress) {
+        if (binding == null) {
+            return;
+        }
+        if (progress.isIdle()) {
+            binding.textImportProgress.setVisibility(View.GONE);
+        } else {
+            binding.textImportProgress.setText(getString(R.string.import_progress,
+                    progress.completed + progress.failed, progress.getTotal()));
+            binding.textImportProgress.setVisibility(View.VISIBLE);
+        }
+    }
+    
+    private void onImportJobFinished(ImportJob job, Video video) {
+        if (binding == null) {
+            return;
+        }
+        
+        if (job.getStatus() == ImportJob.STATUS_DONE) {
+            // 列表随videos表的变化刷新，这里只提示
+            Toast.makeText(requireContext(), "视频已导入: " + video.getTitle(), Toast.LENGTH_SHORT).show();
+        } else if (job.getStatus() == ImportJob.STATUS_DUPLICATE) {
+            String name = job.getDisplayName() != null ? job.getDisplayName() : video.getTitle();
+            Toast.makeText(requireContext(), "该视频已存在: " + name, Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(requireContext(), "导入视频失败: " + job.getError(), Toast.LENGTH_SHORT).show();
+        }
+    }
+    
     private void showVideoImportOptions() {
         String[] options = {
             getString(R.string.from_device),
@@ -352,88 +402,6 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
         return null;
     }
     
-    private void importVideoFromUri(Uri uri, String title, String filePath) {
-        try {
-            // 获取视频时长
-            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-            
-            try {
-                if (uri.toString().startsWith("content:")) {
-                    retriever.setDataSource(requireContext(), uri);
-                } else {
-                    retriever.setDataSource(filePath);
-                }
-                
-                // 获取视频时长（毫秒）
-                String durationStr = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-                long durationMs = durationStr != null ? Long.parseLong(durationStr) : 0;
-                
-                // 如果首次尝试获取时长失败，尝试使用MediaPlayer
-                if (durationMs == 0) {
-                    Log.d("VideosFragment", "通过MediaMetadataRetriever获取时长失败，尝试使用MediaPlayer");
-                    MediaPlayer mp = new MediaPlayer();
-                    try {
-                        if (uri.toString().startsWith("content:")) {
-                            mp.setDataSource(requireContext(), uri);
-                        } else {
-                            mp.setDataSource(filePath);
-                        }
-                        mp.prepare();
-                        durationMs = mp.getDuration();
-                    } catch (Exception e) {
-                        Log.e("VideosFragment", "通过MediaPlayer获取时长失败: " + e.getMessage());
-                    } finally {
-                        mp.release();
-                    }
-                }
-                
-                Log.d("VideosFragment", "视频时长: " + durationMs + "ms");
-                
-                // 创建Video对象
-                Video video = new Video();
-                video.setTitle(title);
-                video.setPath(uri.toString());
-                video.setDuration(durationMs); // 以毫秒为单位设置时长
-                
-                // 为视频生成缩略图
-                String videoId = String.valueOf(System.currentTimeMillis()); // 临时ID
-                String thumbnailPath = MediaStoreHelper.generateThumbnail(requireContext(), uri.toString(), videoId);
-                video.setThumbnailPath(thumbnailPath);
-                
-                // 保存到数据库
-                long insertedId = videoDao.insert(video);
-                
-                // 如果使用了临时ID生成缩略图，且生成成功，则用正确的ID重命名缩略图
-                if (!thumbnailPath.isEmpty() && insertedId > 0) {
-                    File oldFile = new File(thumbnailPath);
-                    File thumbnailDir = new File(requireContext().getFilesDir(), "thumbnails");
-                    File newFile = new File(thumbnailDir, insertedId + ".jpg");
-                    
-                    if (oldFile.renameTo(newFile)) {
-                        // 更新缩略图路径
-                        video.setId((int)insertedId);
-                        video.setThumbnailPath(newFile.getAbsolutePath());
-                        videoDao.update(video);
-                        Log.d("VideosFragment", "已更新缩略图路径: " + newFile.getAbsolutePath());
-                    }
-                }
-                
-                // 提示成功导入
-                Toast.makeText(requireContext(), "已成功导入视频: " + title, Toast.LENGTH_SHORT).show();
-                
-                // 刷新列表
-                loadVideos();
-                
-            } finally {
-                retriever.release();
-            }
-            
-        } catch (Exception e) {
-            Log.e("VideosFragment", "导入视频失败: " + e.getMessage());
-            Toast.makeText(requireContext(), "导入视频失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
-    }
-    
     private String getPathFromUri(Uri uri) {
         String path = null;
         
@@ -513,8 +481,11 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
         super.onActivityResult(requestCode, resultCode, data);
         
         if (requestCode == REQUEST_VIDEO_PICK && resultCode == Activity.RESULT_OK) {
-            // 从VideoPickerActivity返回，重新加载视频列表
-            loadVideos();
+            // 从VideoPickerActivity返回，新视频已写入数据库，列表随表变化刷新
+        } else if (requestCode == REQUEST_FILE_PICK && resultCode == Activity.RESULT_OK
+                && data != null && data.getIntExtra("IMPORTED_COUNT", 0) > 0) {
+            // 从FileBrowserActivity的文件夹扫描返回，视频已批量导入
+            Toast.makeText(requireContext(), "已导入" + data.getIntExtra("IMPORTED_COUNT", 0) + "个视频", Toast.LENGTH_SHORT).show();
         } else if (requestCode == REQUEST_FILE_PICK && resultCode == Activity.RESULT_OK && data != null) {
             // 从文件选择器返回
             Uri selectedVideoUri = data.getData();
@@ -549,6 +520,8 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
                                 Intent.FLAG_GRANT_READ_URI_PERMISSION
                         );
                         Log.d("VideosFragment", "已获取持久性权限: " + selectedVideoUri);
+                        MediaStoreObserver.getInstance(requireContext()).watchUri(selectedVideoUri);
+                        ContentUriValidator.invalidate(selectedVideoUri.toString());
                     } catch (SecurityException e) {
                         Log.e("VideosFragment", "获取持久性权限失败: " + e.getMessage());
                         // 如果无法获取持久权限，显示警告但继续尝试导入
@@ -556,95 +529,13 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
                     }
                 }
                 
-                // 检查是否有额外信息（从FileBrowserActivity返回）
-                String filePath = data.getStringExtra("FILE_PATH");
-                if (filePath != null) {
-                    // 我们有直接的文件路径，使用它创建一个视频对象
-                    executorService.execute(() -> {
-                        try {
-                            String fileName = data.getStringExtra("FILE_NAME");
-                            long fileSize = data.getLongExtra("FILE_SIZE", 0);
-                            long duration = data.getLongExtra("FILE_DURATION", 0);
-                            
-                            // 检查视频是否已经存在
-                            Video existingVideo = null;
-                            
-                            // 先按照路径查询
-                            existingVideo = videoDao.getVideoByPath(filePath);
-                            
-                            // 如果是content URI，还需要检查原始URI
-                            if (existingVideo == null && selectedVideoUri != null) {
-                                existingVideo = videoDao.getVideoByPath(selectedVideoUri.toString());
-                            }
-                            
-                            if (existingVideo == null) {
-                                // 创建新的视频对象
-                                Video video = new Video();
-                                video.setTitle(fileName != null ? fileName : "未命名视频");
-                                
-                                // 对于file://开头的URI，保存原始文件路径
-                                // 对于content://开头的URI，保存URI字符串
-                                if (selectedVideoUri != null && "content".equals(selectedVideoUri.getScheme())) {
-                                    video.setPath(selectedVideoUri.toString());
-                                } else {
-                                    video.setPath(filePath);
-                                }
-                                
-                                video.setSize(fileSize);
-                                // 设置视频时长
-                                video.setDuration(duration);
-                                video.setDateAdded(System.currentTimeMillis() / 1000);
-                                // 设置来源类型为content
-                                video.setSourceType("content");
-                                
-                                // 生成缩略图
-                                String videoId = String.valueOf(System.currentTimeMillis());
-                                String thumbnailPath = MediaStoreHelper.generateThumbnail(requireContext(), filePath, videoId);
-                                if (thumbnailPath != null && !thumbnailPath.isEmpty()) {
-                                    video.setThumbnailPath(thumbnailPath);
-                                }
-                                
-                                // 保存到数据库
-                                long videoId2 = videoDao.insert(video);
-                                
-                                // 如果生成了缩略图，使用正确的ID重命名
-                                if (!thumbnailPath.isEmpty() && videoId2 > 0) {
-                                    File oldFile = new File(thumbnailPath);
-                                    File thumbnailDir = new File(requireContext().getFilesDir(), "thumbnails");
-                                    File newFile = new File(thumbnailDir, videoId2 + ".jpg");
-                                    
-                                    if (oldFile.renameTo(newFile)) {
-                                        // 更新缩略图路径
-                                        video.setId((int)videoId2);
-                                        video.setThumbnailPath(newFile.getAbsolutePath());
-                                        videoDao.update(video);
-                                        Log.d("VideosFragment", "已更新缩略图路径: " + newFile.getAbsolutePath());
-                                    }
-                                }
-                                
-                                requireActivity().runOnUiThread(() -> {
-                                    Toast.makeText(requireContext(), "视频已导入: " + video.getTitle(), Toast.LENGTH_SHORT).show();
-                                    loadVideos();
-                                });
-                            } else {
-                                // 创建一个final副本供lambda表达式使用
-                                final Video finalExistingVideo = existingVideo;
-                                requireActivity().runOnUiThread(() -> {
-                                    Toast.makeText(requireContext(), "该视频已存在: " + (fileName != null ? fileName : finalExistingVideo.getTitle()), Toast.LENGTH_SHORT).show();
-                                });
-                            }
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            requireActivity().runOnUiThread(() -> {
-                                Toast.makeText(requireContext(), "导入视频失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                            });
-                        }
-                    });
-                } else {
-                    // 没有额外信息，直接使用URI添加视频
-                    // 不再尝试将URI转换为本地路径
-                    importVideoFromUriDirectly(selectedVideoUri);
-                }
+                // 写入导入队列，由后台处理，离开页面或进程被杀死后也会继续
+                // 从FileBrowserActivity返回时带有真实路径和文件信息
+                ImportQueue.getInstance(requireContext()).enqueue(
+                        selectedVideoUri,
+                        data.getStringExtra("FILE_PATH"),
+                        data.getStringExtra("FILE_NAME"),
+                        data.getLongExtra("FILE_SIZE", 0));
             }
         } else if (requestCode == REQUEST_MANAGE_STORAGE) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R && Environment.isExternalStorageManager()) {
@@ -660,12 +551,17 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
         // 打开视频播放器（使用MediaPlayer）
         Intent intent = new Intent(requireContext(), com.inf.myjavavideo.ui.player.MediaPlayerActivity.class);
         intent.putExtra("video_id", video.getId());
+        Long cueTime = isSearching ? searchCueTimes.get(video.getId()) : null;
+        if (cueTime != null) {
+            intent.putExtra("start_position", cueTime.longValue());
+        }
         startActivity(intent);
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        ImportQueue.getInstance(requireContext()).removeListener(importProgressListener);
         binding = null;
         
         // 释放适配器资源
@@ -682,136 +578,6 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
         }
     }
 
-    // 直接使用URI导入视频，不尝试转换为文件路径
-    private void importVideoFromUriDirectly(Uri uri) {
-        executorService.execute(() -> {
-            try {
-                // 记录URI信息以便调试
-                String uriString = uri.toString();
-                String scheme = uri.getScheme();
-                
-                Log.d("VideosFragment", "直接使用URI导入: " + uriString + ", 协议: " + scheme);
-                
-                // 获取视频信息
-                String displayName = "";
-                long size = 0;
-                long duration = 0;
-                
-                // 尝试从内容提供者获取信息
-                try {
-                    String[] projection = {
-                            MediaStore.MediaColumns.DISPLAY_NAME,
-                            MediaStore.MediaColumns.SIZE,
-                            MediaStore.Video.Media.DURATION
-                    };
-                    
-                    Cursor cursor = requireContext().getContentResolver().query(uri, projection, null, null, null);
-                    if (cursor != null && cursor.moveToFirst()) {
-                        try {
-                            int displayNameIndex = cursor.getColumnIndex(MediaStore.MediaColumns.DISPLAY_NAME);
-                            if (displayNameIndex != -1) {
-                                displayName = cursor.getString(displayNameIndex);
-                            }
-                            
-                            int sizeIndex = cursor.getColumnIndex(MediaStore.MediaColumns.SIZE);
-                            if (sizeIndex != -1) {
-                                size = cursor.getLong(sizeIndex);
-                            }
-                            
-                            int durationIndex = cursor.getColumnIndex(MediaStore.Video.Media.DURATION);
-                            if (durationIndex != -1) {
-                                duration = cursor.getLong(durationIndex);
-                            }
-                        } catch (Exception e) {
-                            Log.e("VideosFragment", "获取媒体信息失败: " + e.getMessage());
-                        }
-                        cursor.close();
-                    }
-                } catch (Exception e) {
-                    Log.e("VideosFragment", "查询内容提供者失败: " + e.getMessage());
-                }
-                
-                // 如果没有获取到文件名，尝试从URI中提取
-                if (displayName.isEmpty()) {
-                    String path = uri.getPath();
-                    if (path != null) {
-                        int lastSlash = path.lastIndexOf('/');
-                        if (lastSlash != -1) {
-                            displayName = path.substring(lastSlash + 1);
-                            // 移除URL编码
-                            displayName = Uri.decode(displayName);
-                        } else {
-                            displayName = path;
-                        }
-                    } else {
-                        displayName = "未命名视频_" + System.currentTimeMillis();
-                    }
-                }
-                
-                // 如果从内容提供者无法获取时长，尝试使用MediaMetadataRetriever和MediaPlayer
-                if (duration == 0) {
-                    try {
-                        android.media.MediaMetadataRetriever retriever = new android.media.MediaMetadataRetriever();
-                        retriever.setDataSource(requireContext(), uri);
-                        String durationStr = retriever.extractMetadata(android.media.MediaMetadataRetriever.METADATA_KEY_DURATION);
-                        if (durationStr != null) {
-                            duration = Long.parseLong(durationStr);
-                            Log.d("VideosFragment", "通过MediaMetadataRetriever获取时长: " + duration);
-                        }
-                        retriever.release();
-                        
-                        // 如果还是获取不到，尝试MediaPlayer
-                        if (duration == 0) {
-                            android.media.MediaPlayer mp = new android.media.MediaPlayer();
-                            mp.setDataSource(requireContext(), uri);
-                            mp.prepare();
-                            duration = mp.getDuration();
-                            Log.d("VideosFragment", "通过MediaPlayer获取时长: " + duration);
-                            mp.release();
-                        }
-                    } catch (Exception e) {
-                        Log.e("VideosFragment", "获取视频时长失败: " + e.getMessage());
-                    }
-                }
-                
-                // 检查数据库中是否已存在相同URI的视频
-                Video existingVideo = videoDao.getVideoByPath(uriString);
-                
-                if (existingVideo == null) {
-                    // 创建新的视频对象
-                    Video video = new Video();
-                    video.setTitle(displayName);
-                    // 直接保存URI字符串
-                    video.setPath(uriString);
-                    video.setSize(size);
-                    video.setDuration(duration);
-                    video.setDateAdded(System.currentTimeMillis() / 1000);
-                    // 设置来源类型为content
-                    video.setSourceType("content");
-                    
-                    // 保存到数据库
-                    final String finalDisplayName = displayName;
-                    long videoId = videoDao.insert(video);
-                    
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(requireContext(), "视频已导入: " + finalDisplayName, Toast.LENGTH_SHORT).show();
-                        loadVideos();
-                    });
-                } else {
-                    final String finalDisplayName = displayName;
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(requireContext(), "该视频已存在: " + finalDisplayName, Toast.LENGTH_SHORT).show();
-                    });
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                requireActivity().runOnUiThread(() -> {
-                    Toast.makeText(requireContext(), "导入视频失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
-            }
-        });
-    }
-
     // 显示确认对话框，询问是否清除所有内容URI视频
     private void showClearContentUrisDialog() {
         new AlertDialog.Builder(requireContext())
@@ -827,18 +593,19 @@ public class VideosFragment extends Fragment implements VideoGridAdapter.OnVideo
         executorService.execute(() -> {
             try {
                 // 查询所有content://开头的视频
-                List<Video> contentUriVideos = videoDao.getVideosByPathPattern("content://%");
+                List<Video> contentUriVideos = videoDao.getVideosByPathPrefix("content://");
                 int count = contentUriVideos.size();
                 
+                ThumbnailStore thumbnailStore = ThumbnailStore.getInstance(requireContext());
                 for (Video video : contentUriVideos) {
                     videoDao.delete(video);
+                    thumbnailStore.removeForVideo(video);
                 }
                 
                 requireActivity().runOnUiThread(() -> {
                     Toast.makeText(requireContext(), 
                             "已清除" + count + "个内容URI视频", 
                             Toast.LENGTH_SHORT).show();
-                    loadVideos(); // 重新加载视频列表
                 });
             } catch (Exception e) {
                 Log.e("VideosFragment", "清除内容URI视频失败: " + e.getMessage());
@@ -0,0 +1,126 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.Context;
+import android.content.UriPermission;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import com.inf.myjavavideo.data.model.Video;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * content URI有效性检查器
+ * 在后台用一次getPersistedUriPermissions()调用检查所有content://视频，
+ * 结果按TTL缓存；无法访问的视频只做标记，不从数据库删除
+ */
+public class ContentUriValidator {
+    private static final String TAG = "ContentUriValidator";
+    // 检查结果的有效期
+    private static final long CACHE_TTL_MS = 10 * 60 * 1000;
+
+    private static final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 检查完成的回调，在主线程调用
+     */
+    public interface Callback {
+        void onValidated(Set<Integer> unavailableVideoIds);
+    }
+
+    private static class CacheEntry {
+        final boolean accessible;
+        final long checkedAt;
+
+        CacheEntry(boolean accessible, long checkedAt) {
+            this.accessible = accessible;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    /**
+     * 在后台检查视频列表中的content URI，缓存未过期的结果直接复用
+     */
+    public static void validateAsync(Context context, List<Video> videos, Callback callback) {
+        Context appContext = context.getApplicationContext();
+        List<Video> snapshot = new ArrayList<>(videos);
+
+        executorService.execute(() -> {
+            long now = SystemClock.elapsedRealtime();
+            Set<Integer> unavailable = new HashSet<>();
+            Set<String> persistedUris = null;
+
+            for (Video video : snapshot) {
+                String path = video.getPath();
+                if (path == null || !path.startsWith("content://") || !"content".equals(video.getSourceType())) {
+                    continue;
+                }
+
+                CacheEntry entry = cache.get(path);
+                if (entry == null || now - entry.checkedAt > CACHE_TTL_MS) {
+                    // 所有过期条目共用一次权限查询
+                    if (persistedUris == null) {
+                        persistedUris = loadPersistedUris(appContext);
+                    }
+                    entry = new CacheEntry(isAccessible(path, persistedUris), now);
+                    cache.put(path, entry);
+                }
+                if (!entry.accessible) {
+                    unavailable.add(video.getId());
+                }
+            }
+
+            mainHandler.post(() -> callback.onValidated(unavailable));
+        });
+    }
+
+    /**
+     * 使某个URI的缓存失效，例如重新获取了权限之后
+     */
+    public static void invalidate(String uri) {
+        cache.remove(uri);
+    }
+
+    private static Set<String> loadPersistedUris(Context context) {
+        Set<String> uris = new HashSet<>();
+        try {
+            for (UriPermission permission : context.getContentResolver().getPersistedUriPermissions()) {
+                if (permission.isReadPermission()) {
+                    uris.add(permission.getUri().toString());
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "获取持久权限列表失败: " + e.getMessage());
+        }
+        return uris;
+    }
+
+    private static boolean isAccessible(String uri, Set<String> persistedUris) {
+        // 系统媒体库的URI依赖存储权限，不需要持久授权
+        if (uri.startsWith("content://" + MediaStore.AUTHORITY + "/")) {
+            return true;
+        }
+        if (persistedUris.contains(uri)) {
+            return true;
+        }
+        // 通过目录树授权访问的文档
+        for (String persisted : persistedUris) {
+            if (uri.startsWith(persisted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,165 @@
+package com.inf.myjavavideo.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行递归目录扫描器
+ * 使用fork/join方式并行遍历目录树，找到的视频文件分批推送到主线程，支持进度和取消
+ */
+public class FolderScanner {
+    private static final String TAG = "FolderScanner";
+    private static final String[] VIDEO_EXTENSIONS = {"mp4", "mkv", "mov", "avi", "flv", "wmv", "3gp", "webm"};
+    // 每找到这么多文件就推送一次结果，避免频繁切换线程
+    private static final int PUBLISH_BATCH_SIZE = 32;
+
+    private static ForkJoinPool pool;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger scannedDirectories = new AtomicInteger();
+    private final AtomicInteger foundFiles = new AtomicInteger();
+    private final Callback callback;
+    private volatile boolean cancelled;
+
+    /**
+     * 扫描回调，全部在主线程调用
+     */
+    public interface Callback {
+        void onVideosFound(List<File> videos);
+
+        void onProgress(int scannedDirectories, int foundFiles);
+
+        void onComplete(int foundFiles, boolean cancelled);
+    }
+
+    public FolderScanner(Callback callback) {
+        this.callback = callback;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        }
+        return pool;
+    }
+
+    /**
+     * 判断文件名是否为支持的视频格式
+     */
+    public static boolean isVideoFile(String fileName) {
+        if (fileName == null || !fileName.contains(".")) {
+            return false;
+        }
+        String ext = fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
+        for (String videoExt : VIDEO_EXTENSIONS) {
+            if (ext.equals(videoExt)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在后台开始扫描目录树
+     */
+    public void scan(File root) {
+        cancelled = false;
+        scannedDirectories.set(0);
+        foundFiles.set(0);
+
+        ForkJoinPool forkJoinPool = getPool();
+        new Thread(() -> {
+            try {
+                forkJoinPool.invoke(new ScanTask(root));
+            } catch (Exception e) {
+                Log.e(TAG, "扫描目录失败: " + e.getMessage());
+            }
+            int total = foundFiles.get();
+            boolean wasCancelled = cancelled;
+            mainHandler.post(() -> callback.onComplete(total, wasCancelled));
+        }, "folder-scanner").start();
+    }
+
+    /**
+     * 取消扫描，正在执行的子任务会尽快结束
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void publish(List<File> videos) {
+        if (videos.isEmpty() || cancelled) {
+            return;
+        }
+        List<File> batch = new ArrayList<>(videos);
+        videos.clear();
+        int total = foundFiles.addAndGet(batch.size());
+        int directories = scannedDirectories.get();
+        mainHandler.post(() -> {
+            callback.onVideosFound(batch);
+            callback.onProgress(directories, total);
+        });
+    }
+
+    // 扫描单个目录，子目录拆分为并行子任务
+    private class ScanTask extends RecursiveAction {
+        private final File directory;
+
+        ScanTask(File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+
+            File[] files = directory.listFiles();
+            int directories = scannedDirectories.incrementAndGet();
+            if (directories % 50 == 0) {
+                int found = foundFiles.get();
+                mainHandler.post(() -> callback.onProgress(directories, found));
+            }
+            if (files == null) {
+                return;
+            }
+
+            List<ScanTask> subTasks = new ArrayList<>();
+            List<File> videos = new ArrayList<>();
+            for (File file : files) {
+                if (cancelled) {
+                    return;
+                }
+                if (file.isHidden()) {
+                    continue;
+                }
+                if (file.isDirectory()) {
+                    subTasks.add(new ScanTask(file));
+                } else if (isVideoFile(file.getName())) {
+                    videos.add(file);
+                    if (videos.size() >= PUBLISH_BATCH_SIZE) {
+                        publish(videos);
+                    }
+                }
+            }
+            publish(videos);
+
+            if (!subTasks.isEmpty()) {
+                invokeAll(subTasks);
+            }
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import com.inf.myjavavideo.data.AppDatabase;
+import com.inf.myjavavideo.data.dao.ImportJobDao;
+import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.ImportJob;
+import com.inf.myjavavideo.data.model.Video;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 可恢复的视频导入队列
+ * 导入请求先写入import_jobs表再由后台按批处理，读取元数据和计算指纹并发进行，
+ * 入库在一个事务内完成；进程被杀死后下次启动时继续处理未完成的任务，
+ * 任何界面都可以注册监听器获取进度
+ */
+public class ImportQueue {
+    private static final String TAG = "ImportQueue";
+    // 每批领取的任务数
+    private static final int BATCH_SIZE = 8;
+    // 同时读取视频的最大数量
+    private static final int MAX_CONCURRENCY = 2;
+    // 单个任务的最大尝试次数
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static ImportQueue instance;
+
+    private final Context context;
+    private final AppDatabase database;
+    private final ImportJobDao importJobDao;
+    private final VideoDao videoDao;
+    // 入队和调度分开，调度线程处理批次时也能立即入队
+    private final ExecutorService enqueueExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+    private final ExecutorService workers = Executors.newFixedThreadPool(MAX_CONCURRENCY);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<OnImportProgressListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Progress lastProgress;
+
+    /**
+     * 导入进度回调，在主线程调用
+     */
+    public interface OnImportProgressListener {
+        void onProgress(Progress progress);
+
+        /**
+         * 单个任务结束，导入成功或已存在时video不为空
+         */
+        void onJobFinished(ImportJob job, Video video);
+    }
+
+    /**
+     * 队列进度快照
+     */
+    public static class Progress {
+        public final int remaining;
+        public final int completed;
+        public final int failed;
+
+        Progress(int remaining, int completed, int failed) {
+            this.remaining = remaining;
+            this.completed = completed;
+            this.failed = failed;
+        }
+
+        public int getTotal() {
+            return remaining + completed + failed;
+        }
+
+        public boolean isIdle() {
+            return remaining == 0;
+        }
+    }
+
+    // 后台准备好的导入结果，尚未写入数据库
+    private static class PreparedImport {
+        final ImportJob job;
+        final Video video;
+        final String error;
+
+        PreparedImport(ImportJob job, Video video, String error) {
+            this.job = job;
+            this.video = video;
+            this.error = error;
+        }
+    }
+
+    private ImportQueue(Context context) {
+        this.context = context.getApplicationContext();
+        this.database = AppDatabase.getInstance(this.context);
+        this.importJobDao = database.importJobDao();
+        this.videoDao = database.videoDao();
+    }
+
+    public static synchronized ImportQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImportQueue(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 继续处理上次未完成的任务，应用启动时调用
+     */
+    public void resume() {
+        dispatcher.execute(this::drain);
+    }
+
+    /**
+     * 添加导入任务
+     * @param uri 选择器返回的URI
+     * @param filePath 文件浏览器返回的真实路径，没有时传null
+     * @param displayName 文件名，没有时传null，处理时再从内容提供者读取
+     * @param fileSize 文件大小，未知时传0
+     */
+    public void enqueue(Uri uri, String filePath, String displayName, long fileSize) {
+        if (uri == null) {
+            return;
+        }
+
+        enqueueExecutor.execute(() -> {
+            try {
+                String uriString = uri.toString();
+                if (importJobDao.getActiveJobCountForUri(uriString) > 0) {
+                    Log.d(TAG, "该URI已在导入队列中: " + uriString);
+                    return;
+                }
+
+                ImportJob job = new ImportJob();
+                job.setUri(uriString);
+                job.setFilePath(filePath);
+                job.setDisplayName(displayName);
+                job.setFileSize(fileSize);
+                job.setStatus(ImportJob.STATUS_PENDING);
+                job.setCreatedAt(System.currentTimeMillis());
+                importJobDao.insert(job);
+            } catch (Exception e) {
+                Log.e(TAG, "添加导入任务失败: " + e.getMessage());
+                return;
+            }
+
+            publishProgress();
+            dispatcher.execute(this::drain);
+        });
+    }
+
+    public void addListener(OnImportProgressListener listener) {
+        listeners.add(listener);
+        // 新注册的界面立即拿到当前进度
+        Progress progress = lastProgress;
+        if (progress != null) {
+            mainHandler.post(() -> listener.onProgress(progress));
+        }
+    }
+
+    public void removeListener(OnImportProgressListener listener) {
+        listeners.remove(listener);
+    }
+
+    // 在调度线程上循环处理，直到没有待处理的任务
+    private void drain() {
+        try {
+            // 调度线程是单线程，此时处于运行状态的任务只可能是上次进程残留的
+            importJobDao.resetRunningJobs(MAX_ATTEMPTS);
+
+            List<ImportJob> batch;
+            while (!(batch = importJobDao.getPendingJobs(BATCH_SIZE)).isEmpty()) {
+                List<Integer> jobIds = new ArrayList<>();
+                for (ImportJob job : batch) {
+                    jobIds.add(job.getId());
+                    job.setAttempts(job.getAttempts() + 1);
+                }
+                importJobDao.markRunning(jobIds);
+                publishProgress();
+
+                // 并发读取元数据和计算指纹
+                List<Future<PreparedImport>> futures = new ArrayList<>();
+                for (ImportJob job : batch) {
+                    futures.add(workers.submit(() -> prepare(job)));
+                }
+                List<PreparedImport> prepared = new ArrayList<>();
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        prepared.add(futures.get(i).get());
+                    } catch (Exception e) {
+                        prepared.add(new PreparedImport(batch.get(i), null, e.getMessage()));
+                    }
+                }
+
+                commit(prepared);
+                publishProgress();
+            }
+
+            // 队列处理完毕，清理已结束的任务
+            importJobDao.deleteFinishedJobs();
+            lastProgress = null;
+        } catch (Exception e) {
+            Log.e(TAG, "处理导入队列失败: " + e.getMessage());
+        }
+    }
+
+    // 读取视频信息、元数据和内容指纹，不写数据库
+    private PreparedImport prepare(ImportJob job) {
+        try {
+            Uri uri = Uri.parse(job.getUri());
+            boolean isContentUri = "content".equals(uri.getScheme());
+
+            // content URI保存URI字符串，文件保存真实路径
+            String path;
+            if (isContentUri) {
+                path = job.getUri();
+            } else if (job.getFilePath() != null) {
+                path = job.getFilePath();
+            } else if ("file".equals(uri.getScheme())) {
+                path = uri.getPath();
+            } else {
+                path = job.getUri();
+            }
+
+            String displayName = job.getDisplayName();
+            long size = job.getFileSize();
+            long duration = 0;
+
+            // 尝试从内容提供者获取信息
+            if (isContentUri) {
+                try (Cursor cursor = context.getContentResolver().query(uri, null, null, null, null)) {
+                    if (cursor != null && cursor.moveToFirst()) {
+                        int displayNameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                        if ((displayName == null || displayName.isEmpty()) && displayNameIndex != -1) {
+                            displayName = cursor.getString(displayNameIndex);
+                        }
+                        int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                        if (size <= 0 && sizeIndex != -1) {
+                            size = cursor.getLong(sizeIndex);
+                        }
+                        int durationIndex = cursor.getColumnIndex(MediaStore.Video.Media.DURATION);
+                        if (durationIndex != -1) {
+                            duration = cursor.getLong(durationIndex);
+                        }
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "查询内容提供者失败: " + e.getMessage());
+                }
+            } else if (size <= 0) {
+                size = new File(path).length();
+            }
+
+            // 如果没有获取到文件名，尝试从URI中提取
+            if (displayName == null || displayName.isEmpty()) {
+                String lastSegment = uri.getLastPathSegment();
+                if (lastSegment != null) {
+                    int lastSlash = lastSegment.lastIndexOf('/');
+                    displayName = lastSlash != -1 ? lastSegment.substring(lastSlash + 1) : lastSegment;
+                } else {
+                    displayName = "未命名视频_" + System.currentTimeMillis();
+                }
+            }
+
+            Video video = new Video();
+            video.setTitle(displayName);
+            video.setPath(path);
+            video.setSize(size);
+            video.setDuration(duration);
+            video.setDateAdded(System.currentTimeMillis());
+            video.setSourceType(isContentUri ? "content" : "file");
+            video.setThumbnailPath("");
+
+            // 一次打开读取全部技术元数据，内容提供者未给出时长时以此为准；
+            // 缩略图按内容命名，与行ID无关，可以在入库前直接生成
+            String metadataKey = VideoMetadataExtractor.metadataKeyOf(context, path);
+            MediaMetadataRetriever retriever = VideoMetadataExtractor.openRetriever(context, path);
+            if (retriever != null) {
+                try {
+                    VideoMetadataExtractor.applyTo(video, VideoMetadataExtractor.extract(retriever), metadataKey);
+                    File thumbnailFile = MediaStoreHelper.getThumbnailFile(context, path, metadataKey);
+                    video.setThumbnailPath(metadataKey != null && thumbnailFile.length() > 0
+                            ? thumbnailFile.getAbsolutePath()
+                            : MediaStoreHelper.generateThumbnail(context, retriever, thumbnailFile));
+                } finally {
+                    VideoMetadataExtractor.releaseQuietly(retriever);
+                }
+            } else {
+                Log.e(TAG, "读取视频元数据失败: " + path);
+            }
+
+            video.setFingerprint(VideoFingerprint.compute(context, path));
+            return new PreparedImport(job, video, null);
+        } catch (Exception e) {
+            Log.e(TAG, "准备导入失败: " + job.getUri() + ", 错误: " + e.getMessage());
+            return new PreparedImport(job, null, e.getMessage());
+        }
+    }
+
+    // 在一个事务内去重并写入整批结果
+    private void commit(List<PreparedImport> batch) {
+        List<Video> results = new ArrayList<>();
+        database.runInTransaction(() -> {
+            for (PreparedImport item : batch) {
+                ImportJob job = item.job;
+                Video result = null;
+
+                if (item.video == null) {
+                    job.setError(item.error);
+                    job.setStatus(job.getAttempts() >= MAX_ATTEMPTS
+                            ? ImportJob.STATUS_FAILED : ImportJob.STATUS_PENDING);
+                } else {
+                    Video video = item.video;
+                    // 先按路径查询，再按原始URI，最后按内容指纹识别路径不同但内容相同的视频
+                    Video existingVideo = videoDao.getVideoByPath(video.getPath());
+                    if (existingVideo == null && !job.getUri().equals(video.getPath())) {
+                        existingVideo = videoDao.getVideoByPath(job.getUri());
+                    }
+                    if (existingVideo == null && video.getFingerprint() != null) {
+                        existingVideo = videoDao.getVideoByFingerprint(video.getFingerprint());
+                    }
+
+                    if (existingVideo != null) {
+                        job.setStatus(ImportJob.STATUS_DUPLICATE);
+                        result = existingVideo;
+                    } else {
+                        video.setId((int) videoDao.insert(video));
+                        job.setStatus(ImportJob.STATUS_DONE);
+                        result = video;
+                    }
+                    job.setVideoId(result.getId());
+                    job.setError(null);
+                }
+
+                importJobDao.update(job);
+                results.add(result);
+            }
+        });
+
+        // 事务提交后为缺少缩略图的视频补生成，并通知界面
+        ThumbnailPipeline pipeline = ThumbnailPipeline.getInstance(context);
+        for (int i = 0; i < batch.size(); i++) {
+            ImportJob job = batch.get(i).job;
+            Video video = results.get(i);
+            if (job.getStatus() == ImportJob.STATUS_PENDING) {
+                // 稍后重试，不通知
+                continue;
+            }
+            if (job.getStatus() == ImportJob.STATUS_DONE
+                    && (video.getThumbnailPath() == null || video.getThumbnailPath().isEmpty())) {
+                pipeline.enqueue(video, ThumbnailPipeline.PRIORITY_VISIBLE);
+            }
+            mainHandler.post(() -> {
+                for (OnImportProgressListener listener : listeners) {
+                    listener.onJobFinished(job, video);
+                }
+            });
+        }
+    }
+
+    private void publishProgress() {
+        int remaining = importJobDao.getJobCountByStatus(ImportJob.STATUS_PENDING)
+                + importJobDao.getJobCountByStatus(ImportJob.STATUS_RUNNING);
+        int completed = importJobDao.getJobCountByStatus(ImportJob.STATUS_DONE)
+                + importJobDao.getJobCountByStatus(ImportJob.STATUS_DUPLICATE);
+        int failed = importJobDao.getJobCountByStatus(ImportJob.STATUS_FAILED);
+        Progress progress = new Progress(remaining, completed, failed);
+        lastProgress = progress;
+        mainHandler.post(() -> {
+            for (OnImportProgressListener listener : listeners) {
+                listener.onProgress(progress);
+            }
+        });
+    }
+}
@@ -1,139 +1,84 @@
 package com.inf.myjavavideo.utils;
 
-import android.content.ContentResolver;
 import android.content.Context;
-import android.database.Cursor;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.media.MediaMetadataRetriever;
-import android.net.Uri;
 import android.os.Build;
-import android.provider.MediaStore;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.inf.myjavavideo.data.model.Video;
-
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
- * 媒体库助手类，用于从系统媒体库获取视频信息
+ * 媒体助手类，负责生成视频缩略图以及格式化时长和文件大小；
+ * 媒体库中的视频由MediaStoreSync同步
  */
 public class MediaStoreHelper {
     private static final String TAG = "MediaStoreHelper";
+    // 缩略图最长边的像素数，足够覆盖网格和卡片的显示尺寸
+    private static final int THUMBNAIL_MAX_SIZE = 512;
+    private static final int THUMBNAIL_QUALITY = 75;
+    private static final String THUMBNAIL_DIR = "thumbnails";
+    // 候选帧在时长上的位置，避开片头的黑屏和淡入
+    private static final double[] CANDIDATE_FRACTIONS = {0.1, 0.3, 0.5, 0.7};
+    // 挑选代表帧的时间预算，超出后使用已有的最佳帧，避免拖慢批量导入
+    private static final long FRAME_SELECTION_BUDGET_MS = 600;
+    // 评分时每边采样的像素数
+    private static final int SCORE_GRID_SIZE = 16;
+    // 亮度方差达到此值即认为画面内容足够丰富，不再尝试后面的候选
+    private static final double GOOD_FRAME_SCORE = 1500;
+    // 平均亮度超出此范围视为黑屏或白屏
+    private static final double MIN_FRAME_LUMA = 24;
+    private static final double MAX_FRAME_LUMA = 232;
+    private static final Paint SCALE_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+    // 每个缩略图线程复用的缩放缓冲位图
+    private static final ThreadLocal<Bitmap> reusableBitmap = new ThreadLocal<>();
 
     /**
-     * 从媒体库加载所有视频文件
+     * 按视频内容确定缩略图文件
+     * 文件名由路径哈希、文件大小和修改时间组成，与数据库中的行ID无关，
+     * 入库前、入库后或并行生成都指向同一个文件，数据库重建后也能直接复用
+     * @param context 上下文
+     * @param videoPath 视频路径或URI字符串
+     * @param metadataKey 由VideoMetadataExtractor.metadataKeyOf得到的大小和修改时间，可以为null
      */
-    public static List<Video> loadVideosFromMediaStore(Context context) {
-        List<Video> videos = new ArrayList<>();
-        ContentResolver contentResolver = context.getContentResolver();
-        Uri uri;
-        
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            uri = MediaStore.Video.Media.getContentUri(MediaStore.VOLUME_EXTERNAL);
-        } else {
-            uri = MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
-        }
-        
-        String[] projection = {
-                MediaStore.Video.Media._ID,
-                MediaStore.Video.Media.DISPLAY_NAME,
-                MediaStore.Video.Media.DATA,
-                MediaStore.Video.Media.DURATION,
-                MediaStore.Video.Media.SIZE,
-                MediaStore.Video.Media.DATE_ADDED
-        };
-        
-        String sortOrder = MediaStore.Video.Media.DATE_ADDED + " DESC";
-        
-        try (Cursor cursor = contentResolver.query(
-                uri,
-                projection,
-                null,
-                null,
-                sortOrder
-        )) {
-            if (cursor != null) {
-                int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media._ID);
-                int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DISPLAY_NAME);
-                int dataColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATA);
-                int durationColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DURATION);
-                int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.SIZE);
-                
-                while (cursor.moveToNext()) {
-                    String id = cursor.getString(idColumn);
-                    String name = cursor.getString(nameColumn);
-                    String path = cursor.getString(dataColumn);
-                    long duration = cursor.getLong(durationColumn);
-                    long size = cursor.getLong(sizeColumn);
-                    
-                    // 生成缩略图
-                    String thumbnailPath = generateThumbnail(context, path, id);
-                    
-                    // 创建视频对象
-                    Video video = new Video(name, path, thumbnailPath, duration, size);
-                    videos.add(video);
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "获取视频失败: " + e.getMessage());
-        }
-        
-        return videos;
+    public static File getThumbnailFile(Context context, String videoPath, String metadataKey) {
+        return new File(new File(context.getFilesDir(), THUMBNAIL_DIR),
+                getContentKey(videoPath, metadataKey) + ".webp");
+    }
+
+    /**
+     * 视频内容的文件名前缀，缩略图和拖动预览图共用，内容变化后前缀随之变化
+     * @param videoPath 视频路径或URI字符串
+     * @param metadataKey 由VideoMetadataExtractor.metadataKeyOf得到的大小和修改时间，可以为null
+     */
+    public static String getContentKey(String videoPath, String metadataKey) {
+        String contentPart = metadataKey != null ? metadataKey.replace(':', '_') : "0_0";
+        return hashPath(videoPath) + "_" + contentPart;
     }
     
     /**
-     * 为视频生成缩略图
+     * 使用已打开的retriever生成缩略图，便于与元数据读取共用一次打开
      * @param context 上下文
-     * @param videoPath 视频路径或URI字符串
-     * @param videoId 视频ID，用于缩略图文件命名
+     * @param retriever 已设置数据源的MediaMetadataRetriever，由调用方释放
+     * @param target 由getThumbnailFile得到的缩略图文件
      * @return 缩略图文件路径，失败则返回空字符串
      */
-    public static String generateThumbnail(Context context, String videoPath, String videoId) {
-        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+    public static String generateThumbnail(Context context, MediaMetadataRetriever retriever, File target) {
         String thumbnailPath = "";
         
         try {
-            Log.d(TAG, "开始为视频生成缩略图: " + videoPath);
-            
-            if (videoPath.startsWith("content://")) {
-                // 处理内容URI
-                try {
-                    retriever.setDataSource(context, Uri.parse(videoPath));
-                    Log.d(TAG, "使用content URI设置数据源成功");
-                } catch (Exception e) {
-                    Log.e(TAG, "使用content URI设置数据源失败: " + e.getMessage());
-                    return thumbnailPath;
-                }
-            } else {
-                // 处理文件路径
-                try {
-                    retriever.setDataSource(videoPath);
-                    Log.d(TAG, "使用文件路径设置数据源成功");
-                } catch (Exception e) {
-                    Log.e(TAG, "使用文件路径设置数据源失败: " + e.getMessage());
-                    return thumbnailPath;
-                }
-            }
-            
-            // 尝试获取视频的第一帧，如果失败则尝试不同的时间点
-            Bitmap bitmap = null;
-            long[] timeOffsets = {0, 1000000, 2000000, 3000000, 5000000}; // 0秒, 1秒, 2秒, 3秒, 5秒
-            
-            for (long timeOffset : timeOffsets) {
-                try {
-                    bitmap = retriever.getFrameAtTime(timeOffset, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
-                    if (bitmap != null && !bitmap.isRecycled() && bitmap.getWidth() > 0) {
-                        Log.d(TAG, "在时间点 " + (timeOffset/1000000) + "秒成功获取帧");
-                        break;
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "获取时间点 " + (timeOffset/1000000) + "秒的帧失败: " + e.getMessage());
-                }
-            }
+            // 在整个时长上取几个候选帧，选出不是黑屏或纯色的代表帧
+            Bitmap bitmap = selectRepresentativeFrame(retriever);
             
             if (bitmap == null) {
                 Log.e(TAG, "所有时间点都无法获取视频帧");
@@ -141,28 +86,35 @@ public class MediaStoreHelper {
             }
             
             // 确保缩略图目录存在
-            File thumbnailDir = new File(context.getFilesDir(), "thumbnails");
-            if (!thumbnailDir.exists()) {
+            File thumbnailDir = target.getParentFile();
+            if (thumbnailDir != null && !thumbnailDir.exists()) {
                 boolean created = thumbnailDir.mkdirs();
-                if (!created) {
+                if (!created && !thumbnailDir.exists()) {
                     Log.e(TAG, "无法创建缩略图目录");
                     return thumbnailPath;
                 }
             }
             
-            // 保存缩略图
-            File file = new File(thumbnailDir, videoId + ".jpg");
+            // 先写入线程独占的临时文件再改名，同一视频并行生成时不会读到写了一半的文件
+            File tempFile = new File(thumbnailDir, target.getName() + "." + Thread.currentThread().getId() + ".tmp");
             FileOutputStream fos = null;
             
             try {
-                fos = new FileOutputStream(file);
-                // 使用更高的压缩质量，确保缩略图清晰
-                bitmap.compress(Bitmap.CompressFormat.JPEG, 90, fos);
+                fos = new FileOutputStream(tempFile);
+                // 缩略图只用于列表显示，有损WebP在同等清晰度下比JPEG小得多
+                bitmap.compress(getThumbnailFormat(), THUMBNAIL_QUALITY, fos);
                 fos.flush();
-                thumbnailPath = file.getAbsolutePath();
+                fos.close();
+                fos = null;
+                if (!tempFile.renameTo(target)) {
+                    throw new IOException("无法写入 " + target.getName());
+                }
+                thumbnailPath = target.getAbsolutePath();
+                ThumbnailStore.getInstance(context).onFileWritten(target);
                 Log.d(TAG, "成功生成视频缩略图: " + thumbnailPath);
             } catch (IOException e) {
                 Log.e(TAG, "保存缩略图失败: " + e.getMessage());
+                tempFile.delete();
             } finally {
                 if (fos != null) {
                     try {
@@ -172,21 +124,182 @@ public class MediaStoreHelper {
                     }
                 }
                 
-                if (bitmap != null && !bitmap.isRecycled()) {
+                // 复用的缓冲位图留给下一次使用，不回收
+                if (bitmap != reusableBitmap.get() && !bitmap.isRecycled()) {
                     bitmap.recycle();
                 }
             }
         } catch (Exception e) {
             Log.e(TAG, "生成缩略图失败: " + e.getMessage());
-        } finally {
+        }
+        
+        return thumbnailPath;
+    }
+    
+    /**
+     * 选择代表帧
+     * 依次截取候选时间点的帧，在稀疏采样的像素上计算亮度方差，跳过黑屏、白屏和纯色画面；
+     * 遇到足够好的帧或超出时间预算时停止，至少返回一帧可用的画面
+     */
+    private static Bitmap selectRepresentativeFrame(MediaMetadataRetriever retriever) {
+        long startTime = SystemClock.elapsedRealtime();
+        Bitmap best = null;
+        double bestScore = -1;
+        long bestTimeUs = -1;
+        long lastTimeUs = -1;
+        
+        for (long timeUs : getCandidateTimes(retriever)) {
+            if (best != null && SystemClock.elapsedRealtime() - startTime > FRAME_SELECTION_BUDGET_MS) {
+                break;
+            }
+            
+            Bitmap frame;
             try {
-                retriever.release();
+                frame = getScaledFrame(retriever, timeUs);
+                lastTimeUs = timeUs;
             } catch (Exception e) {
-                Log.e(TAG, "释放缩略图资源失败: " + e.getMessage());
+                Log.e(TAG, "获取时间点 " + (timeUs / 1000000) + "秒的帧失败: " + e.getMessage());
+                continue;
+            }
+            if (frame == null || frame.isRecycled() || frame.getWidth() <= 0) {
+                continue;
+            }
+            
+            double score = scoreFrame(frame);
+            if (score > bestScore) {
+                if (best != null && best != frame && best != reusableBitmap.get()) {
+                    best.recycle();
+                }
+                best = frame;
+                bestScore = score;
+                bestTimeUs = timeUs;
+            } else if (frame != reusableBitmap.get()) {
+                frame.recycle();
+            }
+            if (bestScore >= GOOD_FRAME_SCORE) {
+                break;
             }
         }
         
-        return thumbnailPath;
+        // 低版本的帧都写在同一块缓冲位图里，最佳帧被后面的候选覆盖时重新截取
+        if (best != null && best == reusableBitmap.get() && lastTimeUs != bestTimeUs) {
+            best = getScaledFrame(retriever, bestTimeUs);
+        }
+        if (best != null) {
+            Log.d(TAG, "选取时间点 " + (bestTimeUs / 1000000) + "秒的帧，得分: " + Math.round(bestScore));
+        }
+        return best;
+    }
+    
+    // 有时长时按比例分布在整个视频上，否则退回开头几秒
+    private static long[] getCandidateTimes(MediaMetadataRetriever retriever) {
+        long durationMs = 0;
+        try {
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            if (duration != null) {
+                durationMs = Long.parseLong(duration.trim());
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "读取视频时长失败: " + e.getMessage());
+        }
+        
+        if (durationMs <= 0) {
+            return new long[]{0, 1000000, 2000000, 3000000, 5000000}; // 0秒, 1秒, 2秒, 3秒, 5秒
+        }
+        long[] times = new long[CANDIDATE_FRACTIONS.length];
+        for (int i = 0; i < CANDIDATE_FRACTIONS.length; i++) {
+            times[i] = (long) (durationMs * CANDIDATE_FRACTIONS[i]) * 1000;
+        }
+        return times;
+    }
+    
+    /**
+     * 帧的得分，即稀疏采样像素的亮度方差
+     * 过暗或过亮的画面（黑屏、淡入淡出、白屏）大幅降低得分
+     */
+    private static double scoreFrame(Bitmap frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        double sum = 0;
+        double sumSquares = 0;
+        int count = 0;
+        
+        for (int y = 0; y < SCORE_GRID_SIZE; y++) {
+            int py = (int) ((y + 0.5f) * height / SCORE_GRID_SIZE);
+            for (int x = 0; x < SCORE_GRID_SIZE; x++) {
+                int px = (int) ((x + 0.5f) * width / SCORE_GRID_SIZE);
+                int color = frame.getPixel(px, py);
+                double luma = 0.299 * Color.red(color) + 0.587 * Color.green(color) + 0.114 * Color.blue(color);
+                sum += luma;
+                sumSquares += luma * luma;
+                count++;
+            }
+        }
+        
+        double mean = sum / count;
+        double variance = sumSquares / count - mean * mean;
+        if (mean < MIN_FRAME_LUMA || mean > MAX_FRAME_LUMA) {
+            return variance * 0.1;
+        }
+        return variance;
+    }
+    
+    /**
+     * 获取缩放到缩略图尺寸的帧
+     * API 27及以上由解码器直接输出缩放后的帧，不再分配完整分辨率的位图；
+     * 低版本先取完整帧，再缩放到每个线程复用的缓冲位图中
+     */
+    private static Bitmap getScaledFrame(MediaMetadataRetriever retriever, long timeUs) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            return retriever.getScaledFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                    THUMBNAIL_MAX_SIZE, THUMBNAIL_MAX_SIZE);
+        }
+        
+        Bitmap frame = retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+        if (frame == null) {
+            return null;
+        }
+        
+        float scale = Math.min(1f, (float) THUMBNAIL_MAX_SIZE / Math.max(frame.getWidth(), frame.getHeight()));
+        int width = Math.max(1, Math.round(frame.getWidth() * scale));
+        int height = Math.max(1, Math.round(frame.getHeight() * scale));
+        
+        // 缓冲位图按最大尺寸分配一次，之后通过reconfigure调整宽高
+        Bitmap target = reusableBitmap.get();
+        if (target == null || target.isRecycled()) {
+            target = Bitmap.createBitmap(THUMBNAIL_MAX_SIZE, THUMBNAIL_MAX_SIZE, Bitmap.Config.ARGB_8888);
+            reusableBitmap.set(target);
+        }
+        target.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        
+        Canvas canvas = new Canvas(target);
+        canvas.drawBitmap(frame, null, new Rect(0, 0, width, height), SCALE_PAINT);
+        frame.recycle();
+        return target;
+    }
+    
+    // 路径的SHA-1前16位十六进制，只用于区分文件名
+    private static String hashPath(String videoPath) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(videoPath.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                builder.append(String.format("%02x", hash[i]));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(videoPath.hashCode());
+        }
+    }
+    
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat getThumbnailFormat() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        // 低版本的WEBP格式在质量小于100时就是有损压缩
+        return Bitmap.CompressFormat.WEBP;
     }
     
     /**
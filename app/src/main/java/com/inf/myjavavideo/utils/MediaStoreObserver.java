@@ -0,0 +1,189 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.UriPermission;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import com.inf.myjavavideo.data.AppDatabase;
+import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.Video;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 媒体库变更监听器
+ * 监听系统媒体库视频集合和已持久授权的content URI，
+ * 将短时间内的大量变更通知（如录像、批量拷贝）合并为一次增量同步
+ */
+public class MediaStoreObserver {
+    private static final String TAG = "MediaStoreObserver";
+    // 最后一次变更通知之后等待的时间，期间的新通知会重新计时
+    private static final long DEBOUNCE_DELAY_MS = 1500;
+
+    private static MediaStoreObserver instance;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final Set<Uri> dirtyContentUris = new HashSet<>();
+    private final Runnable reconcileRunnable = this::scheduleReconcile;
+    private boolean mediaStoreDirty;
+    private boolean started;
+
+    private final ContentObserver mediaStoreContentObserver = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            synchronized (MediaStoreObserver.this) {
+                mediaStoreDirty = true;
+            }
+            debounce();
+        }
+    };
+
+    private final ContentObserver persistedUriObserver = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            if (uri != null) {
+                synchronized (MediaStoreObserver.this) {
+                    dirtyContentUris.add(uri);
+                }
+            }
+            debounce();
+        }
+    };
+
+    private MediaStoreObserver(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized MediaStoreObserver getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaStoreObserver(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 开始监听，重复调用无副作用
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        ContentResolver contentResolver = context.getContentResolver();
+        try {
+            contentResolver.registerContentObserver(
+                    MediaStoreSync.getVideoCollection(), true, mediaStoreContentObserver);
+        } catch (Exception e) {
+            Log.e(TAG, "注册媒体库监听失败: " + e.getMessage());
+        }
+
+        // 监听所有已持久授权的URI
+        for (UriPermission permission : contentResolver.getPersistedUriPermissions()) {
+            try {
+                contentResolver.registerContentObserver(permission.getUri(), false, persistedUriObserver);
+            } catch (Exception e) {
+                Log.e(TAG, "注册URI监听失败: " + permission.getUri() + ", 错误: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 新增持久授权的URI后调用，开始监听该URI
+     */
+    public synchronized void watchUri(Uri uri) {
+        if (!started || uri == null) {
+            return;
+        }
+        try {
+            context.getContentResolver().registerContentObserver(uri, false, persistedUriObserver);
+        } catch (Exception e) {
+            Log.e(TAG, "注册URI监听失败: " + uri + ", 错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止监听并丢弃尚未执行的同步
+     */
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        mainHandler.removeCallbacks(reconcileRunnable);
+        context.getContentResolver().unregisterContentObserver(mediaStoreContentObserver);
+        context.getContentResolver().unregisterContentObserver(persistedUriObserver);
+    }
+
+    // 重新计时，直到变更通知停止一段时间后才执行同步
+    private void debounce() {
+        mainHandler.removeCallbacks(reconcileRunnable);
+        mainHandler.postDelayed(reconcileRunnable, DEBOUNCE_DELAY_MS);
+    }
+
+    private void scheduleReconcile() {
+        final boolean syncMediaStore;
+        final List<Uri> contentUris;
+        synchronized (this) {
+            syncMediaStore = mediaStoreDirty;
+            contentUris = new ArrayList<>(dirtyContentUris);
+            mediaStoreDirty = false;
+            dirtyContentUris.clear();
+        }
+
+        // 写入videos表后界面通过表监听自动刷新
+        executorService.execute(() -> {
+            if (syncMediaStore) {
+                MediaStoreSync.sync(context);
+            }
+            reconcileContentUris(contentUris);
+        });
+    }
+
+    // 重新读取变更的content URI的大小信息，读取失败时视为暂时不可用，不删除记录
+    private void reconcileContentUris(List<Uri> uris) {
+        if (uris.isEmpty()) {
+            return;
+        }
+
+        VideoDao videoDao = AppDatabase.getInstance(context).videoDao();
+        List<Video> changed = new ArrayList<>();
+        for (Uri uri : uris) {
+            Video video = videoDao.getVideoByPath(uri.toString());
+            if (video == null) {
+                continue;
+            }
+
+            try (Cursor cursor = context.getContentResolver().query(
+                    uri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+                if (cursor != null && cursor.moveToFirst()) {
+                    long size = cursor.getLong(0);
+                    if (size > 0 && size != video.getSize()) {
+                        video.setSize(size);
+                        changed.add(video);
+                    }
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "读取URI信息失败: " + uri + ", 错误: " + e.getMessage());
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            videoDao.updateAll(changed);
+        }
+    }
+}
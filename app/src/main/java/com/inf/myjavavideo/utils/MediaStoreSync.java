@@ -0,0 +1,339 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import com.inf.myjavavideo.data.AppDatabase;
+import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.Video;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 媒体库增量同步引擎
+ * 记录上次同步的水位（媒体库版本、generation、DATE_MODIFIED、最大_ID），
+ * 每次只读取新增、修改或删除的行，并在一个事务内同步到videos表
+ */
+public class MediaStoreSync {
+    private static final String TAG = "MediaStoreSync";
+    private static final String PREF_NAME = "MediaStoreSyncPref";
+    private static final String KEY_MEDIA_STORE_VERSION = "media_store_version";
+    private static final String KEY_GENERATION = "generation";
+    private static final String KEY_DATE_MODIFIED = "date_modified";
+    private static final String KEY_LAST_ID = "last_id";
+    // 由同步创建的视频的来源类型，只有这些视频会随媒体库删除而删除，
+    // 用户自己导入、后来被匹配上媒体库ID的视频不受影响；与VideoDao中的查询保持一致
+    public static final String SOURCE_TYPE = "media_store";
+    // SQLite单条语句的参数数量有限，删除时分批处理
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    /**
+     * 一次同步的结果，界面通过videos表的变化刷新，这里只保留数量
+     */
+    public static class SyncResult {
+        public int added;
+        public int updated;
+        public int deleted;
+    }
+
+    // 媒体库中的一行视频记录
+    private static class MediaStoreEntry {
+        long id;
+        String name;
+        String path;
+        long duration;
+        long size;
+    }
+
+    /**
+     * 执行一次增量同步，必须在后台线程调用
+     */
+    public static synchronized SyncResult sync(Context context) {
+        Context appContext = context.getApplicationContext();
+        SharedPreferences prefs = appContext.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        AppDatabase database = AppDatabase.getInstance(appContext);
+        VideoDao videoDao = database.videoDao();
+        SyncResult result = new SyncResult();
+
+        // 媒体库版本变化（如重建索引、更换存储卷）时，水位失效，需要完整同步
+        String mediaStoreVersion = "";
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            mediaStoreVersion = MediaStore.getVersion(appContext);
+        }
+        long lastGeneration = -1;
+        long lastDateModified = -1;
+        long lastId = -1;
+        if (mediaStoreVersion.equals(prefs.getString(KEY_MEDIA_STORE_VERSION, null))) {
+            lastGeneration = prefs.getLong(KEY_GENERATION, -1);
+            lastDateModified = prefs.getLong(KEY_DATE_MODIFIED, -1);
+            lastId = prefs.getLong(KEY_LAST_ID, -1);
+        }
+
+        ContentResolver contentResolver = appContext.getContentResolver();
+        Uri collection = getVideoCollection();
+
+        // 1. 读取水位之后新增或修改的行
+        List<String> projection = new ArrayList<>();
+        projection.add(MediaStore.Video.Media._ID);
+        projection.add(MediaStore.Video.Media.DISPLAY_NAME);
+        projection.add(MediaStore.Video.Media.DATA);
+        projection.add(MediaStore.Video.Media.DURATION);
+        projection.add(MediaStore.Video.Media.SIZE);
+        projection.add(MediaStore.Video.Media.DATE_MODIFIED);
+
+        String selection;
+        String[] selectionArgs;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            projection.add(MediaStore.MediaColumns.GENERATION_MODIFIED);
+            selection = MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?";
+            selectionArgs = new String[]{String.valueOf(lastGeneration)};
+        } else {
+            // DATE_MODIFIED精度为秒，使用>=避免漏掉同一秒内的修改
+            selection = MediaStore.Video.Media.DATE_MODIFIED + " >= ? OR " + MediaStore.Video.Media._ID + " > ?";
+            selectionArgs = new String[]{String.valueOf(lastDateModified), String.valueOf(lastId)};
+        }
+
+        List<MediaStoreEntry> changedEntries = new ArrayList<>();
+        long newGeneration = lastGeneration;
+        long newDateModified = lastDateModified;
+        long newLastId = lastId;
+
+        try (Cursor cursor = contentResolver.query(
+                collection,
+                projection.toArray(new String[0]),
+                selection,
+                selectionArgs,
+                MediaStore.Video.Media._ID + " ASC"
+        )) {
+            if (cursor == null) {
+                Log.e(TAG, "查询媒体库失败，跳过本次同步");
+                return result;
+            }
+
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media._ID);
+            int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DISPLAY_NAME);
+            int dataColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATA);
+            int durationColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DURATION);
+            int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.SIZE);
+            int dateModifiedColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATE_MODIFIED);
+            int generationColumn = -1;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                generationColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.GENERATION_MODIFIED);
+            }
+
+            while (cursor.moveToNext()) {
+                MediaStoreEntry entry = new MediaStoreEntry();
+                entry.id = cursor.getLong(idColumn);
+                entry.name = cursor.getString(nameColumn);
+                entry.path = cursor.getString(dataColumn);
+                entry.duration = cursor.getLong(durationColumn);
+                entry.size = cursor.getLong(sizeColumn);
+                if (entry.path == null) {
+                    continue;
+                }
+                changedEntries.add(entry);
+
+                newLastId = Math.max(newLastId, entry.id);
+                newDateModified = Math.max(newDateModified, cursor.getLong(dateModifiedColumn));
+                if (generationColumn != -1) {
+                    newGeneration = Math.max(newGeneration, cursor.getLong(generationColumn));
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "读取媒体库变更失败: " + e.getMessage());
+            return result;
+        }
+
+        // 2. 找出已从媒体库删除的行，只需读取_ID列
+        List<Long> deletedIds = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(
+                collection,
+                new String[]{MediaStore.Video.Media._ID},
+                null,
+                null,
+                null
+        )) {
+            if (cursor != null) {
+                Set<Long> currentIds = new HashSet<>();
+                while (cursor.moveToNext()) {
+                    currentIds.add(cursor.getLong(0));
+                }
+                for (Long knownId : videoDao.getSyncedMediaStoreIds()) {
+                    if (!currentIds.contains(knownId)) {
+                        deletedIds.add(knownId);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "读取媒体库ID失败，跳过删除检测: " + e.getMessage());
+        }
+
+        // 3. 在一个事务中匹配已有记录并写入所有变更，匹配和写入之间不会有其他导入插入同一路径；
+        // 缩略图交给流水线在入库后生成
+        List<Video> thumbnailQueue = new ArrayList<>();
+        // 被移动或重命名前的旧记录，事务提交后删除按旧内容命名的缩略图和预览图
+        List<Video> staleVideos = new ArrayList<>();
+        database.runInTransaction(() -> {
+            List<Video> toInsert = new ArrayList<>();
+            List<Video> toUpdate = new ArrayList<>();
+            List<Video> toDelete = new ArrayList<>();
+            // 本次新增或移入的路径，同一路径只写入一次
+            Set<String> claimedPaths = new HashSet<>();
+            for (MediaStoreEntry entry : changedEntries) {
+                Video video = findExistingVideo(videoDao, entry);
+                if (video == null) {
+                    if (!claimedPaths.add(entry.path)) {
+                        continue;
+                    }
+                    // 先以占位图入库
+                    video = new Video(entry.name, entry.path, "", entry.duration, entry.size);
+                    video.setMediaStoreId(entry.id);
+                    video.setSourceType(SOURCE_TYPE);
+                    toInsert.add(video);
+                    continue;
+                }
+
+                // 文件被重命名或移动后_ID不变，content URI仍然有效，只有文件路径需要跟随
+                boolean moved = !video.getPath().startsWith("content://") && !video.getPath().equals(entry.path);
+                if (moved) {
+                    Video holder = videoDao.getVideoByPath(entry.path);
+                    if ((holder != null && holder.getId() != video.getId()) || claimedPaths.contains(entry.path)) {
+                        // 新路径已被另一条记录占用，由该记录代表这个文件
+                        if (holder != null && holder.getMediaStoreId() != entry.id) {
+                            holder.setMediaStoreId(entry.id);
+                            toUpdate.add(holder);
+                        }
+                        if (SOURCE_TYPE.equals(video.getSourceType())) {
+                            toDelete.add(video);
+                            staleVideos.add(video);
+                        } else {
+                            // 用户导入的记录保留，只解除与媒体库的关联
+                            video.setMediaStoreId(0);
+                            toUpdate.add(video);
+                        }
+                        continue;
+                    }
+                    claimedPaths.add(entry.path);
+                    staleVideos.add(copyContentKey(video));
+                    video.setPath(entry.path);
+                    // 旧缩略图按旧路径命名，交给流水线按新路径重新生成
+                    video.setThumbnailPath("");
+                }
+
+                boolean sizeChanged = video.getSize() != entry.size;
+                boolean missingThumbnail = video.getThumbnailPath() == null || video.getThumbnailPath().isEmpty();
+                if (sizeChanged || missingThumbnail) {
+                    thumbnailQueue.add(video);
+                }
+                boolean unchanged = video.getMediaStoreId() == entry.id
+                        && !moved
+                        && !sizeChanged
+                        && (entry.name == null || entry.name.equals(video.getTitle()))
+                        && (entry.duration <= 0 || video.getDuration() == entry.duration);
+                if (unchanged) {
+                    continue;
+                }
+                // 保留收藏、播放进度等用户数据，只更新媒体信息
+                video.setMediaStoreId(entry.id);
+                video.setSize(entry.size);
+                if (entry.name != null) {
+                    video.setTitle(entry.name);
+                }
+                if (entry.duration > 0) {
+                    video.setDuration(entry.duration);
+                }
+                toUpdate.add(video);
+            }
+
+            // 先删除被取代的记录，再写入更新和新增，避免路径唯一约束冲突
+            for (Video video : toDelete) {
+                videoDao.delete(video);
+            }
+            if (!toUpdate.isEmpty()) {
+                videoDao.updateAll(toUpdate);
+            }
+            if (!toInsert.isEmpty()) {
+                List<Long> insertedIds = videoDao.insertAll(toInsert);
+                for (int i = 0; i < toInsert.size(); i++) {
+                    toInsert.get(i).setId(insertedIds.get(i).intValue());
+                }
+                thumbnailQueue.addAll(toInsert);
+            }
+            result.added = toInsert.size();
+            result.updated = toUpdate.size();
+
+            for (int i = 0; i < deletedIds.size(); i += DELETE_BATCH_SIZE) {
+                List<Long> batch = deletedIds.subList(i, Math.min(i + DELETE_BATCH_SIZE, deletedIds.size()));
+                videoDao.deleteSyncedByMediaStoreIds(batch);
+            }
+            result.deleted = deletedIds.size() + toDelete.size();
+        });
+
+        // 4. 事务提交后再推进水位
+        prefs.edit()
+                .putString(KEY_MEDIA_STORE_VERSION, mediaStoreVersion)
+                .putLong(KEY_GENERATION, newGeneration)
+                .putLong(KEY_DATE_MODIFIED, newDateModified)
+                .putLong(KEY_LAST_ID, newLastId)
+                .apply();
+
+        ThumbnailPipeline pipeline = ThumbnailPipeline.getInstance(appContext);
+        for (Video video : thumbnailQueue) {
+            pipeline.enqueue(video, ThumbnailPipeline.PRIORITY_BACKGROUND);
+        }
+        ThumbnailStore thumbnailStore = ThumbnailStore.getInstance(appContext);
+        for (Video video : staleVideos) {
+            thumbnailStore.removeForVideo(video);
+        }
+        // 被删除视频的缩略图交给存储清理
+        if (result.deleted > 0) {
+            thumbnailStore.sweepOrphansAsync();
+        }
+
+        Log.d(TAG, "同步完成: 新增" + result.added + ", 更新" + result.updated + ", 删除" + result.deleted);
+        return result;
+    }
+
+    /**
+     * 获取系统媒体库的视频集合URI
+     */
+    public static Uri getVideoCollection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return MediaStore.Video.Media.getContentUri(MediaStore.VOLUME_EXTERNAL);
+        }
+        return MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
+    }
+
+    // 复制视频移动前的路径、缩略图和内容标识，用于删除按旧内容命名的文件
+    private static Video copyContentKey(Video video) {
+        Video previous = new Video();
+        previous.setId(video.getId());
+        previous.setPath(video.getPath());
+        previous.setThumbnailPath(video.getThumbnailPath());
+        previous.setMetadataKey(video.getMetadataKey());
+        return previous;
+    }
+
+    // 依次按媒体库ID、文件路径、content URI查找已有记录，避免重复导入
+    private static Video findExistingVideo(VideoDao videoDao, MediaStoreEntry entry) {
+        Video video = videoDao.getVideoByMediaStoreId(entry.id);
+        if (video == null) {
+            video = videoDao.getVideoByPath(entry.path);
+        }
+        if (video == null) {
+            Uri contentUri = ContentUris.withAppendedId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, entry.id);
+            video = videoDao.getVideoByPath(contentUri.toString());
+        }
+        return video;
+    }
+}
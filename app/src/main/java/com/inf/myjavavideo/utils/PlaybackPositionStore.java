@@ -0,0 +1,117 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.inf.myjavavideo.data.AppDatabase;
+import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.Video;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 播放进度的延迟写入
+ * 播放器随时记录最新进度，只保存在内存中，每个视频保留最后一次的值；
+ * 暂停、切换视频时立即写入，播放期间最多每隔FLUSH_INTERVAL_MS合并写入一次，
+ * 进程意外退出时最多丢失这段时间内的进度
+ */
+public class PlaybackPositionStore {
+    private static final String TAG = "PlaybackPositionStore";
+    // 播放期间的写入间隔
+    private static final long FLUSH_INTERVAL_MS = 5000;
+
+    private static PlaybackPositionStore instance;
+
+    private final VideoDao videoDao;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    // 尚未写入数据库的进度，videoId -> 位置（毫秒）
+    private final Map<Integer, Long> pending = new HashMap<>();
+    // 正在写入的一批进度，写入完成前读取进度时仍以它为准
+    private Map<Integer, Long> writing = new HashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private PlaybackPositionStore(Context context) {
+        this.videoDao = AppDatabase.getInstance(context).videoDao();
+    }
+
+    public static synchronized PlaybackPositionStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlaybackPositionStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 记录视频的最新进度，不立即写入数据库
+     */
+    public synchronized void record(int videoId, long position) {
+        pending.put(videoId, position);
+        if (scheduledFlush == null) {
+            scheduledFlush = executor.schedule(this::writePending, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 在后台立即写入所有尚未保存的进度，暂停或切换视频时调用
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = executor.schedule(this::writePending, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取视频应恢复的进度，还没写入数据库的记录优先
+     */
+    public synchronized long getPosition(Video video) {
+        Long position = pending.get(video.getId());
+        if (position == null) {
+            position = writing.get(video.getId());
+        }
+        return position != null ? position : video.getLastPlayedPosition();
+    }
+
+    // 取出所有待写入的进度，在一个事务中写入
+    private void writePending() {
+        Map<Integer, Long> batch;
+        synchronized (this) {
+            scheduledFlush = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new HashMap<>(pending);
+            pending.clear();
+            writing = batch;
+        }
+
+        try {
+            videoDao.updateLastPlayedPositions(batch);
+            synchronized (this) {
+                writing = new HashMap<>();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "保存播放进度失败: " + e.getMessage());
+            // 放回队列等待下次写入，期间已有更新的进度则保留更新的
+            synchronized (this) {
+                writing = new HashMap<>();
+                for (Map.Entry<Integer, Long> entry : batch.entrySet()) {
+                    if (!pending.containsKey(entry.getKey())) {
+                        pending.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                if (scheduledFlush == null) {
+                    scheduledFlush = executor.schedule(this::writePending, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.inf.myjavavideo.data.AppDatabase;
+import com.inf.myjavavideo.data.dao.PlaylistVideoDao;
+import com.inf.myjavavideo.data.model.PlaylistSummary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 播放列表封面
+ * 由前四个成员视频的缩略图拼成2x2马赛克，保存为文件并把路径写入播放列表；
+ * 成员变化时由数据库触发器清空路径，下次显示列表时才重新拼接，绑定列表行时不访问数据库
+ */
+public class PlaylistCovers {
+    private static final String TAG = "PlaylistCovers";
+    private static final String DIR_NAME = "playlist_covers";
+    // 每个格子的边长和封面的行列数
+    private static final int CELL_SIZE = 128;
+    private static final int GRID = 2;
+    private static final int COVER_QUALITY = 75;
+
+    private static PlaylistCovers instance;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "playlist-cover");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Integer> pendingPlaylistIds = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * 封面生成完成的回调，在主线程调用
+     */
+    public interface Callback {
+        void onCoverReady(int playlistId, String coverPath);
+    }
+
+    private PlaylistCovers(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized PlaylistCovers getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlaylistCovers(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 检查播放列表摘要的封面，需要重新拼接的先用第一个成员的缩略图代替显示，并在后台重新拼接
+     * 必须在后台线程调用
+     */
+    public void rebuildMissing(List<PlaylistSummary> summaries, Callback callback) {
+        for (PlaylistSummary summary : summaries) {
+            if (!needsRebuild(summary.getThumbnailPath())) {
+                continue;
+            }
+            String firstThumbnailPath = summary.getFirstThumbnailPath();
+            summary.setThumbnailPath(firstThumbnailPath != null ? firstThumbnailPath : "");
+            if (summary.getVideoCount() > 0) {
+                rebuild(summary.getId(), callback);
+            }
+        }
+    }
+
+    // 路径为空、封面文件丢失或仍是旧版本直接使用的视频缩略图时需要重新拼接
+    private boolean needsRebuild(String coverPath) {
+        if (coverPath == null || coverPath.isEmpty()) {
+            return true;
+        }
+        File coverFile = new File(coverPath);
+        return !getCoverDir().equals(coverFile.getParentFile()) || !coverFile.exists();
+    }
+
+    /**
+     * 在后台重新拼接封面，同一播放列表正在生成时忽略重复请求
+     * 成员都还没有缩略图时不生成，也不回调
+     */
+    public void rebuild(int playlistId, Callback callback) {
+        if (!pendingPlaylistIds.add(playlistId)) {
+            return;
+        }
+
+        executor.execute(() -> {
+            try {
+                String coverPath = buildCover(playlistId);
+                if (coverPath != null) {
+                    mainHandler.post(() -> callback.onCoverReady(playlistId, coverPath));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "生成播放列表封面失败: " + e.getMessage());
+            } finally {
+                pendingPlaylistIds.remove(playlistId);
+            }
+        });
+    }
+
+    /**
+     * 删除播放列表的封面文件
+     */
+    public static void delete(Context context, int playlistId) {
+        new File(new File(context.getFilesDir(), DIR_NAME), playlistId + ".webp").delete();
+    }
+
+    private String buildCover(int playlistId) throws Exception {
+        AppDatabase database = AppDatabase.getInstance(context);
+        PlaylistVideoDao playlistVideoDao = database.playlistVideoDao();
+        List<String> thumbnailPaths = playlistVideoDao.getCoverThumbnailPaths(playlistId, GRID * GRID);
+        if (thumbnailPaths.isEmpty()) {
+            return null;
+        }
+
+        // 只有一个成员时占满整个封面
+        int cells = thumbnailPaths.size() == 1 ? 1 : GRID;
+        int coverSize = CELL_SIZE * GRID;
+        int cellSize = coverSize / cells;
+        Bitmap cover = Bitmap.createBitmap(coverSize, coverSize, Bitmap.Config.RGB_565);
+        Canvas canvas = new Canvas(cover);
+        canvas.drawColor(Color.DKGRAY);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        Rect target = new Rect();
+
+        try {
+            for (int i = 0; i < thumbnailPaths.size() && i < cells * cells; i++) {
+                Bitmap thumbnail = decodeSampled(thumbnailPaths.get(i), cellSize);
+                if (thumbnail == null) {
+                    continue;
+                }
+                int left = (i % cells) * cellSize;
+                int top = (i / cells) * cellSize;
+                target.set(left, top, left + cellSize, top + cellSize);
+                canvas.drawBitmap(thumbnail, centerCropSource(thumbnail), target, paint);
+                thumbnail.recycle();
+            }
+
+            File dir = getCoverDir();
+            if (!dir.exists() && !dir.mkdirs()) {
+                Log.e(TAG, "无法创建封面目录");
+                return null;
+            }
+            File coverFile = new File(dir, playlistId + ".webp");
+            try (FileOutputStream outputStream = new FileOutputStream(coverFile)) {
+                cover.compress(getCoverFormat(), COVER_QUALITY, outputStream);
+            }
+            String coverPath = coverFile.getAbsolutePath();
+
+            // 拼接期间成员可能又发生了变化，确认一致后再写入，否则等待下次重建
+            boolean[] written = {false};
+            database.runInTransaction(() -> {
+                if (thumbnailPaths.equals(playlistVideoDao.getCoverThumbnailPaths(playlistId, GRID * GRID))) {
+                    database.playlistDao().updateThumbnailPath(playlistId, coverPath);
+                    written[0] = true;
+                }
+            });
+            return written[0] ? coverPath : null;
+        } finally {
+            cover.recycle();
+        }
+    }
+
+    // 按格子大小解码缩略图，避免读入完整尺寸
+    private static Bitmap decodeSampled(String path, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        int sampleSize = 1;
+        while (Math.min(options.outWidth, options.outHeight) / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeFile(path, options);
+    }
+
+    // 取图片中间的正方形区域
+    private static Rect centerCropSource(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int side = Math.min(width, height);
+        int left = (width - side) / 2;
+        int top = (height - side) / 2;
+        return new Rect(left, top, left + side, top + side);
+    }
+
+    private File getCoverDir() {
+        return new File(context.getFilesDir(), DIR_NAME);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat getCoverFormat() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        return Bitmap.CompressFormat.WEBP;
+    }
+}
@@ -0,0 +1,366 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.inf.myjavavideo.data.model.Video;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 拖动进度条时的预览图
+ * 首次播放时在后台按固定间隔截取低分辨率帧，拼成一张雪碧图保存在缩略图旁边，
+ * 之后直接读取缓存；拖动过程中只从雪碧图中裁剪最近的一帧，不需要解码视频
+ */
+public class SeekPreviewSprites {
+    private static final String TAG = "SeekPreviewSprites";
+    // 每帧最长边的像素数
+    private static final int FRAME_MAX_SIZE = 160;
+    private static final int COLUMNS = 10;
+    // 最多截取的帧数和最小截取间隔
+    private static final int MAX_FRAMES = 100;
+    private static final long MIN_INTERVAL_MS = 2000;
+    private static final int SHEET_QUALITY = 70;
+    // 文件名为视频内容前缀加后缀，与缩略图使用同一前缀
+    static final String SHEET_SUFFIX = "_seek.webp";
+    static final String LAYOUT_SUFFIX = "_seek.json";
+
+    private static SeekPreviewSprites instance;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 截帧比较耗时，只用一个低优先级线程
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "seek-preview");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Integer> pendingVideoIds = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * 雪碧图准备好的回调，在主线程调用
+     */
+    public interface Callback {
+        void onSheetReady(Sheet sheet);
+    }
+
+    /**
+     * 加载到内存中的雪碧图及其布局
+     */
+    public static class Sheet {
+        final int videoId;
+        final Bitmap bitmap;
+        final long intervalMs;
+        final int frameCount;
+        final int frameWidth;
+        final int frameHeight;
+
+        Sheet(int videoId, Bitmap bitmap, long intervalMs, int frameCount, int frameWidth, int frameHeight) {
+            this.videoId = videoId;
+            this.bitmap = bitmap;
+            this.intervalMs = intervalMs;
+            this.frameCount = frameCount;
+            this.frameWidth = frameWidth;
+            this.frameHeight = frameHeight;
+        }
+
+        public int getVideoId() {
+            return videoId;
+        }
+
+        public int getFrameWidth() {
+            return frameWidth;
+        }
+
+        public int getFrameHeight() {
+            return frameHeight;
+        }
+
+        /**
+         * 计算距离指定播放位置最近的一帧在雪碧图中的区域
+         */
+        public void getFrameBounds(long positionMs, Rect outBounds) {
+            int index = (int) ((positionMs + intervalMs / 2) / intervalMs);
+            index = Math.max(0, Math.min(frameCount - 1, index));
+            int left = (index % COLUMNS) * frameWidth;
+            int top = (index / COLUMNS) * frameHeight;
+            outBounds.set(left, top, left + frameWidth, top + frameHeight);
+        }
+    }
+
+    /**
+     * 绘制雪碧图中某一帧的Drawable，切换帧时只改变裁剪区域
+     */
+    public static class FrameDrawable extends Drawable {
+        private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final Rect frameBounds = new Rect();
+        private Sheet sheet;
+
+        public void setFrame(Sheet sheet, long positionMs) {
+            this.sheet = sheet;
+            sheet.getFrameBounds(positionMs, frameBounds);
+            invalidateSelf();
+        }
+
+        @Override
+        public void draw(@NonNull Canvas canvas) {
+            if (sheet != null && !sheet.bitmap.isRecycled()) {
+                canvas.drawBitmap(sheet.bitmap, frameBounds, getBounds(), paint);
+            }
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return sheet != null ? sheet.frameWidth : -1;
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return sheet != null ? sheet.frameHeight : -1;
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            paint.setAlpha(alpha);
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            paint.setColorFilter(colorFilter);
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.OPAQUE;
+        }
+    }
+
+    private SeekPreviewSprites(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized SeekPreviewSprites getInstance(Context context) {
+        if (instance == null) {
+            instance = new SeekPreviewSprites(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 加载视频的雪碧图，没有缓存时在后台生成
+     * 同一视频正在生成时忽略重复请求
+     */
+    public void load(Video video, Callback callback) {
+        if (video == null || video.getId() <= 0 || video.getPath() == null || video.getPath().isEmpty()) {
+            return;
+        }
+        if (!pendingVideoIds.add(video.getId())) {
+            return;
+        }
+
+        int videoId = video.getId();
+        String videoPath = video.getPath();
+        executor.execute(() -> {
+            try {
+                // 按当前内容命名，视频被替换或重新入库后不会读到旧的预览图
+                String contentKey = MediaStoreHelper.getContentKey(videoPath,
+                        VideoMetadataExtractor.metadataKeyOf(context, videoPath));
+                Sheet sheet = readSheet(videoId, contentKey);
+                if (sheet == null) {
+                    sheet = buildSheet(videoId, videoPath, contentKey);
+                }
+                if (sheet != null) {
+                    Sheet result = sheet;
+                    mainHandler.post(() -> callback.onSheetReady(result));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "加载预览图失败: " + e.getMessage());
+            } finally {
+                pendingVideoIds.remove(videoId);
+            }
+        });
+    }
+
+    /**
+     * 删除视频某一内容版本的雪碧图缓存，例如视频被删除或内容发生变化时
+     * @param metadataKey 生成雪碧图时视频的"大小:修改时间"标识，可以为null
+     */
+    public static void delete(Context context, String videoPath, String metadataKey) {
+        if (videoPath == null || videoPath.isEmpty()) {
+            return;
+        }
+        File dir = getSheetDir(context);
+        String contentKey = MediaStoreHelper.getContentKey(videoPath, metadataKey);
+        new File(dir, contentKey + SHEET_SUFFIX).delete();
+        new File(dir, contentKey + LAYOUT_SUFFIX).delete();
+    }
+
+    private static File getSheetDir(Context context) {
+        // 与缩略图放在同一目录
+        return new File(context.getFilesDir(), "thumbnails");
+    }
+
+    // 读取已缓存的雪碧图，不存在或损坏时返回null
+    private Sheet readSheet(int videoId, String contentKey) {
+        File dir = getSheetDir(context);
+        File imageFile = new File(dir, contentKey + SHEET_SUFFIX);
+        File layoutFile = new File(dir, contentKey + LAYOUT_SUFFIX);
+        if (!imageFile.exists() || !layoutFile.exists()) {
+            return null;
+        }
+
+        try (FileInputStream inputStream = new FileInputStream(layoutFile)) {
+            byte[] bytes = new byte[(int) layoutFile.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int count = inputStream.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+            JSONObject layout = new JSONObject(new String(bytes, 0, read, StandardCharsets.UTF_8));
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            Bitmap bitmap = BitmapFactory.decodeFile(imageFile.getAbsolutePath(), options);
+            if (bitmap == null) {
+                return null;
+            }
+            return new Sheet(videoId, bitmap,
+                    layout.getLong("interval"),
+                    layout.getInt("count"),
+                    layout.getInt("width"),
+                    layout.getInt("height"));
+        } catch (Exception e) {
+            Log.w(TAG, "读取预览图缓存失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 按固定间隔截帧并拼成雪碧图，保存后返回
+    private Sheet buildSheet(int videoId, String videoPath, String contentKey) {
+        MediaMetadataRetriever retriever = VideoMetadataExtractor.openRetriever(context, videoPath);
+        if (retriever == null) {
+            return null;
+        }
+
+        try {
+            VideoMetadataExtractor.Metadata metadata = VideoMetadataExtractor.extract(retriever);
+            if (metadata.duration <= 0 || metadata.width <= 0 || metadata.height <= 0) {
+                return null;
+            }
+
+            // 旋转90度或270度的视频宽高互换
+            int sourceWidth = metadata.rotation % 180 == 0 ? metadata.width : metadata.height;
+            int sourceHeight = metadata.rotation % 180 == 0 ? metadata.height : metadata.width;
+            float scale = (float) FRAME_MAX_SIZE / Math.max(sourceWidth, sourceHeight);
+            int frameWidth = Math.max(1, Math.round(sourceWidth * scale));
+            int frameHeight = Math.max(1, Math.round(sourceHeight * scale));
+
+            long intervalMs = Math.max(MIN_INTERVAL_MS, metadata.duration / MAX_FRAMES);
+            int frameCount = (int) Math.min(MAX_FRAMES, metadata.duration / intervalMs + 1);
+            int rows = (frameCount + COLUMNS - 1) / COLUMNS;
+
+            Bitmap sheetBitmap = Bitmap.createBitmap(
+                    frameWidth * Math.min(COLUMNS, frameCount), frameHeight * rows, Bitmap.Config.RGB_565);
+            Canvas canvas = new Canvas(sheetBitmap);
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            Rect target = new Rect();
+
+            for (int i = 0; i < frameCount; i++) {
+                long timeUs = i * intervalMs * 1000;
+                Bitmap frame;
+                try {
+                    // 取最近的关键帧即可，比精确定位快得多
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                        frame = retriever.getScaledFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                                frameWidth, frameHeight);
+                    } else {
+                        frame = retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+                    }
+                } catch (Exception e) {
+                    Log.w(TAG, "截取第" + i + "帧失败: " + e.getMessage());
+                    continue;
+                }
+                if (frame == null) {
+                    continue;
+                }
+
+                int left = (i % COLUMNS) * frameWidth;
+                int top = (i / COLUMNS) * frameHeight;
+                target.set(left, top, left + frameWidth, top + frameHeight);
+                canvas.drawBitmap(frame, null, target, paint);
+                frame.recycle();
+            }
+
+            File dir = getSheetDir(context);
+            if (!dir.exists() && !dir.mkdirs()) {
+                Log.e(TAG, "无法创建缩略图目录");
+                return null;
+            }
+
+            // 先写图片再写布局，布局文件存在即表示缓存完整
+            File imageFile = new File(dir, contentKey + SHEET_SUFFIX);
+            try (FileOutputStream outputStream = new FileOutputStream(imageFile)) {
+                sheetBitmap.compress(getSheetFormat(), SHEET_QUALITY, outputStream);
+            }
+            JSONObject layout = new JSONObject();
+            layout.put("interval", intervalMs);
+            layout.put("count", frameCount);
+            layout.put("width", frameWidth);
+            layout.put("height", frameHeight);
+            File layoutFile = new File(dir, contentKey + LAYOUT_SUFFIX);
+            try (FileOutputStream outputStream = new FileOutputStream(layoutFile)) {
+                outputStream.write(layout.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            ThumbnailStore store = ThumbnailStore.getInstance(context);
+            store.onFileWritten(imageFile);
+            store.onFileWritten(layoutFile);
+
+            Log.d(TAG, "已生成预览图: " + videoPath + ", 帧数: " + frameCount);
+            return new Sheet(videoId, sheetBitmap, intervalMs, frameCount, frameWidth, frameHeight);
+        } catch (Exception e) {
+            Log.e(TAG, "生成预览图失败: " + videoPath + ", 错误: " + e.getMessage());
+            return null;
+        } finally {
+            VideoMetadataExtractor.releaseQuietly(retriever);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat getSheetFormat() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        return Bitmap.CompressFormat.WEBP;
+    }
+}
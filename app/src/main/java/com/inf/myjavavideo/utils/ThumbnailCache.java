@@ -0,0 +1,197 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.Context;
+import android.widget.ImageView;
+
+import androidx.annotation.DrawableRes;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.signature.ObjectKey;
+import com.inf.myjavavideo.data.model.Video;
+
+import java.io.File;
+
+/**
+ * 缩略图两级缓存
+ * 内存中按堆大小的一定比例缓存解码后的位图，磁盘上按显示尺寸保存缩放好的版本，
+ * 列表滚动时只读取小图，不再重复解码原始缩略图，也不会打开视频文件
+ */
+public class ThumbnailCache {
+    // 缩放后的缩略图保存在cacheDir下的这个目录
+    public static final String DISK_CACHE_DIR = "thumbnail_variants";
+    private static final long DISK_CACHE_SIZE = 64L * 1024 * 1024;
+    // 内存缓存占最大堆的比例
+    private static final int MEMORY_CACHE_DIVISOR = 8;
+
+    /**
+     * 缩略图的显示尺寸，每种尺寸在磁盘上单独缓存一份
+     */
+    public static class Variant {
+        final int widthDp;
+        final int heightDp;
+
+        Variant(int widthDp, int heightDp) {
+            this.widthDp = widthDp;
+            this.heightDp = heightDp;
+        }
+
+        int widthPx(Context context) {
+            return Math.round(widthDp * context.getResources().getDisplayMetrics().density);
+        }
+
+        int heightPx(Context context) {
+            return Math.round(heightDp * context.getResources().getDisplayMetrics().density);
+        }
+    }
+
+    // 两列网格中的单元格
+    public static final Variant GRID = new Variant(200, 140);
+    // 首页横向列表中的卡片
+    public static final Variant CARD = new Variant(200, 120);
+    // 播放列表行中的封面
+    public static final Variant COVER = new Variant(60, 60);
+
+    /**
+     * 配置Glide的内存和磁盘缓存，由GlideModule调用
+     */
+    public static void applyOptions(Context context, GlideBuilder builder) {
+        builder.setMemoryCache(new LruResourceCache(Runtime.getRuntime().maxMemory() / MEMORY_CACHE_DIVISOR));
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_DIR, DISK_CACHE_SIZE));
+    }
+
+    /**
+     * 按指定尺寸加载视频的缩略图
+     * @return 缩略图文件不存在时返回false，由调用方请求生成
+     */
+    public static boolean load(ImageView target, Video video, Variant variant, @DrawableRes int placeholder) {
+        File thumbnailFile = getThumbnailFile(video);
+        if (thumbnailFile == null) {
+            return false;
+        }
+        ThumbnailStore.getInstance(target.getContext()).recordAccess(thumbnailFile);
+
+        Glide.with(target.getContext())
+                .load(thumbnailFile)
+                .signature(signatureOf(thumbnailFile))
+                .apply(variantOptions(target.getContext(), variant))
+                .placeholder(placeholder)
+                .into(target);
+        return true;
+    }
+
+    /**
+     * 按指定尺寸加载本地图片文件，例如播放列表封面
+     * @return 文件不存在时返回false，视图显示占位图
+     */
+    public static boolean loadFile(ImageView target, String imagePath, Variant variant, @DrawableRes int placeholder) {
+        File imageFile = imagePath == null || imagePath.isEmpty() ? null : new File(imagePath);
+        if (imageFile == null || imageFile.lastModified() == 0 || imageFile.length() == 0) {
+            clear(target);
+            target.setImageResource(placeholder);
+            return false;
+        }
+
+        Glide.with(target.getContext())
+                .load(imageFile)
+                .signature(signatureOf(imageFile))
+                .apply(variantOptions(target.getContext(), variant))
+                .placeholder(placeholder)
+                .into(target);
+        return true;
+    }
+
+    /**
+     * 提前把缩略图解码到内存缓存，之后绑定时直接命中
+     * @return 缩略图文件不存在时返回false，由调用方请求生成
+     */
+    public static boolean preload(Context context, Video video, Variant variant) {
+        File thumbnailFile = getThumbnailFile(video);
+        if (thumbnailFile == null) {
+            return false;
+        }
+
+        Glide.with(context)
+                .load(thumbnailFile)
+                .signature(signatureOf(thumbnailFile))
+                .apply(variantOptions(context, variant))
+                .preload(variant.widthPx(context), variant.heightPx(context));
+        return true;
+    }
+
+    /**
+     * 按指定尺寸加载未入库视频的第一帧，缩放结果同样写入磁盘缓存
+     */
+    public static void loadFrame(ImageView target, String videoPath, Variant variant,
+                                 @DrawableRes int placeholder, @DrawableRes int error) {
+        Glide.with(target.getContext())
+                .load(videoPath)
+                .apply(variantOptions(target.getContext(), variant))
+                .placeholder(placeholder)
+                .error(error)
+                .into(target);
+    }
+
+    /**
+     * 提前加载未入库视频的第一帧
+     */
+    public static void preloadFrame(Context context, String videoPath, Variant variant) {
+        Glide.with(context)
+                .load(videoPath)
+                .apply(variantOptions(context, variant))
+                .preload(variant.widthPx(context), variant.heightPx(context));
+    }
+
+    /**
+     * 取消视图上正在进行的加载
+     */
+    public static void clear(ImageView target) {
+        Glide.with(target.getContext()).clear(target);
+    }
+
+    /**
+     * 清空内存缓存，必须在主线程调用
+     */
+    public static void clearMemory(Context context) {
+        Glide.get(context).clearMemory();
+    }
+
+    /**
+     * 清空磁盘上缩放好的版本，必须在后台线程调用
+     */
+    public static void clearDiskCache(Context context) {
+        Glide.get(context).clearDiskCache();
+    }
+
+    // 返回存在且非空的缩略图文件，否则返回null
+    private static File getThumbnailFile(Video video) {
+        String thumbnailPath = video.getThumbnailPath();
+        if (thumbnailPath == null || thumbnailPath.isEmpty()) {
+            return null;
+        }
+        File thumbnailFile = new File(thumbnailPath);
+        if (thumbnailFile.lastModified() == 0 || thumbnailFile.length() == 0) {
+            return null;
+        }
+        return thumbnailFile;
+    }
+
+    // 缩略图重新生成后修改时间变化，缓存的缩放版本随之失效
+    private static ObjectKey signatureOf(File thumbnailFile) {
+        return new ObjectKey(thumbnailFile.lastModified() + ":" + thumbnailFile.length());
+    }
+
+    private static RequestOptions variantOptions(Context context, Variant variant) {
+        // 只缓存缩放后的结果，缩略图不需要透明通道
+        return new RequestOptions()
+                .override(variant.widthPx(context), variant.heightPx(context))
+                .centerCrop()
+                .format(DecodeFormat.PREFER_RGB_565)
+                .diskCacheStrategy(DiskCacheStrategy.RESOURCE);
+    }
+}
@@ -0,0 +1,242 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.Context;
+import android.media.MediaMetadataRetriever;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.inf.myjavavideo.data.AppDatabase;
+import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.Video;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缩略图生成流水线
+ * 视频记录先以占位图入库，缩略图由与CPU核数匹配的有界线程池在后台生成，
+ * 屏幕上可见的视频优先处理，每生成一张就更新数据库并通知界面；
+ * 生成缩略图时顺带读取尚未读取过的技术元数据
+ */
+public class ThumbnailPipeline {
+    private static final String TAG = "ThumbnailPipeline";
+
+    // 优先级，数值越小越先处理
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_PREFETCH = 1;
+    public static final int PRIORITY_BACKGROUND = 2;
+
+    private static ThumbnailPipeline instance;
+
+    private final Context context;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<Integer, ThumbnailTask> pendingTasks = new ConcurrentHashMap<>();
+    private final List<OnThumbnailReadyListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 缩略图生成完成的回调，在主线程调用
+     * 传入的视频已包含新的缩略图路径和元数据
+     */
+    public interface OnThumbnailReadyListener {
+        void onThumbnailReady(Video video);
+    }
+
+    private ThumbnailPipeline(Context context) {
+        this.context = context.getApplicationContext();
+
+        // 留出一个核心给UI线程，最多使用4个线程，避免MediaMetadataRetriever占用过多内存
+        int poolSize = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                30L,
+                TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }, "thumbnail-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized ThumbnailPipeline getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailPipeline(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 将视频加入缩略图生成队列，同一视频重复加入时只会提升优先级
+     */
+    public synchronized void enqueue(Video video, int priority) {
+        if (video == null || video.getId() <= 0 || video.getPath() == null || video.getPath().isEmpty()) {
+            return;
+        }
+
+        ThumbnailTask existing = pendingTasks.get(video.getId());
+        if (existing != null) {
+            if (priority < existing.priority) {
+                reprioritize(existing, priority);
+            }
+            return;
+        }
+
+        ThumbnailTask task = new ThumbnailTask(video.getId(), video.getPath(), priority, sequence.incrementAndGet());
+        pendingTasks.put(video.getId(), task);
+        executor.execute(task);
+    }
+
+    /**
+     * 视频已滚出屏幕时降低其优先级，让位于当前可见的视频
+     * 任务仍保留在队列中，之后空闲时照常生成
+     */
+    public synchronized void deprioritize(int videoId) {
+        ThumbnailTask existing = pendingTasks.get(videoId);
+        if (existing != null && existing.priority < PRIORITY_BACKGROUND) {
+            reprioritize(existing, PRIORITY_BACKGROUND);
+        }
+    }
+
+    // 只有仍在排队的任务才能调整优先级，正在执行的任务不受影响
+    private void reprioritize(ThumbnailTask task, int priority) {
+        if (executor.getQueue().remove(task)) {
+            task.priority = priority;
+            executor.execute(task);
+        }
+    }
+
+    public void addListener(OnThumbnailReadyListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OnThumbnailReadyListener listener) {
+        listeners.remove(listener);
+    }
+
+    private class ThumbnailTask implements Runnable, Comparable<ThumbnailTask> {
+        private final int videoId;
+        private final String videoPath;
+        private final long order;
+        private volatile int priority;
+
+        ThumbnailTask(int videoId, String videoPath, int priority, long order) {
+            this.videoId = videoId;
+            this.videoPath = videoPath;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            MediaMetadataRetriever retriever = null;
+            try {
+                VideoDao videoDao = AppDatabase.getInstance(context).videoDao();
+                Video video = videoDao.getVideoById(videoId);
+                if (video == null) {
+                    return;
+                }
+
+                String metadataKey = VideoMetadataExtractor.metadataKeyOf(context, videoPath);
+                boolean contentChanged = VideoMetadataExtractor.needsProbe(video, metadataKey);
+                // 缩略图按内容命名，内容未变且文件已存在时直接复用，例如数据库重建后重新入库的视频
+                File thumbnailFile = MediaStoreHelper.getThumbnailFile(context, videoPath, metadataKey);
+                boolean thumbnailExists = metadataKey != null && thumbnailFile.length() > 0;
+                if (thumbnailExists && !contentChanged && video.getFingerprint() != null) {
+                    publish(video, thumbnailFile.getAbsolutePath());
+                    return;
+                }
+
+                // 需要读取元数据或生成缩略图时才打开视频，一次打开同时完成两者；只缺指纹时不打开
+                if (contentChanged || !thumbnailExists) {
+                    retriever = VideoMetadataExtractor.openRetriever(context, videoPath);
+                    if (retriever == null) {
+                        return;
+                    }
+                }
+
+                if (contentChanged) {
+                    String previousKey = video.getMetadataKey();
+                    VideoMetadataExtractor.Metadata metadata = VideoMetadataExtractor.extract(retriever);
+                    VideoMetadataExtractor.applyTo(video, metadata, metadataKey);
+                    videoDao.updateMetadata(videoId, metadata.duration, metadata.width, metadata.height,
+                            metadata.bitrate, metadata.rotation, metadata.mimeType, metadata.frameRate, metadataKey);
+                    // 内容变化后旧的拖动预览图不再有效，新内容会使用新的文件名
+                    if (previousKey != null) {
+                        SeekPreviewSprites.delete(context, videoPath, previousKey);
+                    }
+                }
+
+                // 批量导入的视频在这里补算内容指纹，供之后的导入去重
+                if (contentChanged || video.getFingerprint() == null) {
+                    String fingerprint = VideoFingerprint.compute(context, videoPath);
+                    if (fingerprint != null) {
+                        video.setFingerprint(fingerprint);
+                        videoDao.updateFingerprint(videoId, fingerprint);
+                    }
+                }
+
+                String thumbnailPath = thumbnailExists
+                        ? thumbnailFile.getAbsolutePath()
+                        : MediaStoreHelper.generateThumbnail(context, retriever, thumbnailFile);
+                if (thumbnailPath == null || thumbnailPath.isEmpty()) {
+                    Log.e(TAG, "缩略图生成失败: " + videoPath);
+                    return;
+                }
+
+                publish(video, thumbnailPath);
+            } catch (Exception e) {
+                Log.e(TAG, "生成缩略图过程中出错: " + e.getMessage());
+            } finally {
+                if (retriever != null) {
+                    VideoMetadataExtractor.releaseQuietly(retriever);
+                }
+                pendingTasks.remove(videoId);
+            }
+        }
+
+        // 记录缩略图路径并通知界面，路径未变时不写数据库
+        private void publish(Video video, String thumbnailPath) {
+            if (!thumbnailPath.equals(video.getThumbnailPath())) {
+                AppDatabase database = AppDatabase.getInstance(context);
+                database.runInTransaction(() -> {
+                    database.videoDao().updateThumbnailPath(videoId, thumbnailPath);
+                    database.playlistDao().clearCoversForVideo(videoId);
+                });
+                video.setThumbnailPath(thumbnailPath);
+            }
+            mainHandler.post(() -> {
+                for (OnThumbnailReadyListener listener : listeners) {
+                    listener.onThumbnailReady(video);
+                }
+            });
+        }
+
+        @Override
+        public int compareTo(@NonNull ThumbnailTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.inf.myjavavideo.data.AppDatabase;
+import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.Video;
+import com.inf.myjavavideo.data.model.VideoContentKey;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缩略图存储管理
+ * filesDir/thumbnails设有容量上限，超出后按最近访问时间淘汰最久未用的文件，
+ * 定期清理数据库中已没有对应视频的孤立文件；被淘汰的缩略图在下次显示时重新生成
+ * 访问时间保存在内存中，由后台线程合并写入一个索引文件，显示缩略图时不做磁盘读写
+ */
+public class ThumbnailStore {
+    private static final String TAG = "ThumbnailStore";
+    private static final String DIR_NAME = "thumbnails";
+    private static final String PREF_NAME = "ThumbnailStorePref";
+    private static final String KEY_LAST_SWEEP = "last_sweep";
+    // 旧版本在SharedPreferences中按文件记录访问时间的键前缀，首次加载索引时迁移并删除
+    private static final String KEY_ACCESS_PREFIX = "access_";
+    // 访问时间索引文件，放在缩略图目录之外，不计入容量
+    private static final String ACCESS_INDEX_NAME = "thumbnail_access.idx";
+    // 访问时间变化后延迟写入索引，合并这段时间内的所有变化
+    private static final long INDEX_SAVE_DELAY_MS = 30L * 1000;
+
+    // 容量上限，淘汰到上限的90%为止，避免频繁触发
+    private static final long QUOTA_BYTES = 50L * 1024 * 1024;
+    private static final long TRIM_TARGET_BYTES = QUOTA_BYTES * 9 / 10;
+    // 孤立文件清理的间隔
+    private static final long SWEEP_INTERVAL_MS = 24L * 60 * 60 * 1000;
+    // 新写入的文件可能还没有记录到数据库，清理时跳过
+    private static final long ORPHAN_GRACE_MS = 10L * 60 * 1000;
+    // 访问时间的精度，同一文件在此时间内只记录一次
+    private static final long ACCESS_RESOLUTION_MS = 60L * 60 * 1000;
+
+    private static ThumbnailStore instance;
+
+    private final Context context;
+    private final File directory;
+    private final SharedPreferences prefs;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicFile accessIndex;
+    private final Map<String, Long> accessTimes = new ConcurrentHashMap<>();
+    private final AtomicBoolean indexDirty = new AtomicBoolean(false);
+    // 当前占用的字节数，首次统计前为-1
+    private final AtomicLong usedBytes = new AtomicLong(-1);
+
+    /**
+     * 存储统计信息
+     */
+    public static class Stats {
+        public final int fileCount;
+        public final long totalBytes;
+        public final long quotaBytes;
+
+        Stats(int fileCount, long totalBytes, long quotaBytes) {
+            this.fileCount = fileCount;
+            this.totalBytes = totalBytes;
+            this.quotaBytes = quotaBytes;
+        }
+    }
+
+    /**
+     * 统计完成的回调，在主线程调用
+     */
+    public interface StatsCallback {
+        void onStats(Stats stats);
+    }
+
+    private ThumbnailStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.directory = new File(this.context.getFilesDir(), DIR_NAME);
+        this.prefs = this.context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        this.accessIndex = new AtomicFile(new File(this.context.getFilesDir(), ACCESS_INDEX_NAME));
+        // 单线程执行，淘汰和清理总在索引加载之后进行
+        executor.execute(this::loadAccessIndex);
+    }
+
+    public static synchronized ThumbnailStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 记录文件被访问，用于按最近访问时间淘汰，只修改内存，可在主线程调用
+     */
+    public void recordAccess(File file) {
+        String name = file.getName();
+        long now = System.currentTimeMillis();
+        Long last = accessTimes.get(name);
+        if (last != null && now - last < ACCESS_RESOLUTION_MS) {
+            return;
+        }
+        accessTimes.put(name, now);
+        scheduleIndexSave();
+    }
+
+    /**
+     * 写入新文件后调用，超出容量时在后台淘汰
+     */
+    public void onFileWritten(File file) {
+        recordAccess(file);
+        if (usedBytes.get() >= 0 && usedBytes.addAndGet(file.length()) > QUOTA_BYTES) {
+            executor.execute(this::trimToQuota);
+        }
+    }
+
+    /**
+     * 删除视频对应的缩略图和拖动预览图
+     */
+    public void removeForVideo(Video video) {
+        String thumbnailPath = video.getThumbnailPath();
+        if (thumbnailPath != null && !thumbnailPath.isEmpty()) {
+            File file = new File(thumbnailPath);
+            if (directory.equals(file.getParentFile())) {
+                deleteFile(file);
+            }
+        }
+        SeekPreviewSprites.delete(context, video.getPath(), video.getMetadataKey());
+    }
+
+    /**
+     * 在后台执行维护：到期时清理孤立文件，并把占用控制在容量以内，应用启动时调用
+     */
+    public void maintainAsync() {
+        executor.execute(() -> {
+            long now = System.currentTimeMillis();
+            if (now - prefs.getLong(KEY_LAST_SWEEP, 0) > SWEEP_INTERVAL_MS) {
+                sweepOrphans();
+                prefs.edit().putLong(KEY_LAST_SWEEP, now).apply();
+            }
+            trimToQuota();
+        });
+    }
+
+    /**
+     * 视频被批量删除后立即清理孤立文件
+     */
+    public void sweepOrphansAsync() {
+        executor.execute(this::sweepOrphans);
+    }
+
+    /**
+     * 在后台统计占用情况
+     */
+    public void getStatsAsync(StatsCallback callback) {
+        executor.execute(() -> {
+            List<File> files = listFiles();
+            long total = 0;
+            for (File file : files) {
+                total += file.length();
+            }
+            usedBytes.set(total);
+            Stats stats = new Stats(files.size(), total, QUOTA_BYTES);
+            mainHandler.post(() -> callback.onStats(stats));
+        });
+    }
+
+    /**
+     * 删除全部缩略图和缩放好的版本，之后显示时重新生成
+     */
+    public void clearAsync(Runnable onCleared) {
+        executor.execute(() -> {
+            for (File file : listFiles()) {
+                deleteFile(file);
+            }
+            usedBytes.set(0);
+            ThumbnailCache.clearDiskCache(context);
+            mainHandler.post(onCleared);
+        });
+    }
+
+    // 删除数据库中没有对应视频的文件
+    private void sweepOrphans() {
+        try {
+            VideoDao videoDao = AppDatabase.getInstance(context).videoDao();
+            Set<String> referenced = new HashSet<>();
+            for (String thumbnailPath : videoDao.getAllThumbnailPaths()) {
+                referenced.add(new File(thumbnailPath).getName());
+            }
+            // 拖动预览图以视频当前内容命名，内容变化或视频删除后旧文件即成为孤立文件
+            for (VideoContentKey key : videoDao.getAllContentKeys()) {
+                String contentKey = MediaStoreHelper.getContentKey(key.getPath(), key.getMetadataKey());
+                referenced.add(contentKey + SeekPreviewSprites.SHEET_SUFFIX);
+                referenced.add(contentKey + SeekPreviewSprites.LAYOUT_SUFFIX);
+            }
+
+            long now = System.currentTimeMillis();
+            int removed = 0;
+            long total = 0;
+            for (File file : listFiles()) {
+                String name = file.getName();
+                if (referenced.contains(name) || now - file.lastModified() < ORPHAN_GRACE_MS) {
+                    total += file.length();
+                    continue;
+                }
+                long length = file.length();
+                if (deleteFile(file)) {
+                    removed++;
+                } else {
+                    total += length;
+                }
+            }
+            usedBytes.set(total);
+            Log.d(TAG, "已清理孤立缩略图: " + removed + "个");
+        } catch (Exception e) {
+            Log.e(TAG, "清理孤立缩略图失败: " + e.getMessage());
+        }
+    }
+
+    // 按最近访问时间从旧到新淘汰，直到低于目标占用
+    private void trimToQuota() {
+        List<File> files = listFiles();
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        usedBytes.set(total);
+        if (total <= QUOTA_BYTES) {
+            return;
+        }
+
+        List<long[]> order = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            order.add(new long[]{lastAccessOf(files.get(i)), i});
+        }
+        order.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        int removed = 0;
+        for (long[] entry : order) {
+            if (total <= TRIM_TARGET_BYTES) {
+                break;
+            }
+            File file = files.get((int) entry[1]);
+            long length = file.length();
+            if (deleteFile(file)) {
+                total -= length;
+                removed++;
+            }
+        }
+        usedBytes.set(total);
+        Log.d(TAG, "缩略图超出容量，已淘汰" + removed + "个文件");
+    }
+
+    private long lastAccessOf(File file) {
+        Long accessed = accessTimes.get(file.getName());
+        return Math.max(accessed != null ? accessed : 0, file.lastModified());
+    }
+
+    // 访问时间有变化时，延迟一段时间后在后台写入索引
+    private void scheduleIndexSave() {
+        if (indexDirty.compareAndSet(false, true)) {
+            mainHandler.postDelayed(() -> executor.execute(this::saveAccessIndex), INDEX_SAVE_DELAY_MS);
+        }
+    }
+
+    // 读取访问时间索引，内存中已有更新的记录时保留内存中的值
+    private void loadAccessIndex() {
+        if (!accessIndex.getBaseFile().exists()) {
+            migrateLegacyAccessTimes();
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(accessIndex.openRead()))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long accessed = in.readLong();
+                Long current = accessTimes.get(name);
+                if (current == null || current < accessed) {
+                    accessTimes.put(name, accessed);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "读取缩略图访问记录失败: " + e.getMessage());
+        }
+    }
+
+    // 把旧版本保存在SharedPreferences中的访问时间转入索引，并从SharedPreferences中删除
+    private void migrateLegacyAccessTimes() {
+        SharedPreferences.Editor editor = prefs.edit();
+        boolean migrated = false;
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (entry.getKey().startsWith(KEY_ACCESS_PREFIX) && entry.getValue() instanceof Long) {
+                String name = entry.getKey().substring(KEY_ACCESS_PREFIX.length());
+                if (!accessTimes.containsKey(name)) {
+                    accessTimes.put(name, (Long) entry.getValue());
+                }
+                editor.remove(entry.getKey());
+                migrated = true;
+            }
+        }
+        if (migrated) {
+            editor.apply();
+            saveAccessIndex();
+        }
+    }
+
+    // 把内存中的访问时间整体写入索引文件，写入失败时保留原文件
+    private void saveAccessIndex() {
+        indexDirty.set(false);
+        Map<String, Long> snapshot = new HashMap<>(accessTimes);
+        FileOutputStream stream = null;
+        try {
+            stream = accessIndex.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Long> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.flush();
+            accessIndex.finishWrite(stream);
+        } catch (IOException e) {
+            Log.e(TAG, "保存缩略图访问记录失败: " + e.getMessage());
+            if (stream != null) {
+                accessIndex.failWrite(stream);
+            }
+        }
+    }
+
+    private List<File> listFiles() {
+        File[] files = directory.listFiles();
+        List<File> result = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile()) {
+                    result.add(file);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean deleteFile(File file) {
+        if (accessTimes.remove(file.getName()) != null) {
+            scheduleIndexSave();
+        }
+        return file.delete();
+    }
+}
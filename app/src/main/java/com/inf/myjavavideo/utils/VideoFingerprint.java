@@ -0,0 +1,96 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 视频内容指纹
+ * 由文件大小和开头、中间、结尾三个固定大小数据块的哈希组成，
+ * 使用NIO按位置读取，不需要读取整个文件，同一文件通过路径和content URI导入时指纹相同
+ */
+public class VideoFingerprint {
+    private static final String TAG = "VideoFingerprint";
+    // 每个采样块的大小
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * 计算文件路径或content URI的内容指纹，失败返回null
+     */
+    public static String compute(Context context, String videoPath) {
+        if (videoPath == null || videoPath.isEmpty()) {
+            return null;
+        }
+
+        try {
+            if (videoPath.startsWith("content://")) {
+                try (ParcelFileDescriptor pfd = context.getContentResolver()
+                        .openFileDescriptor(Uri.parse(videoPath), "r")) {
+                    if (pfd == null) {
+                        return null;
+                    }
+                    try (FileInputStream inputStream = new FileInputStream(pfd.getFileDescriptor())) {
+                        return compute(inputStream.getChannel());
+                    }
+                }
+            }
+
+            String path = videoPath.startsWith("file://") ? Uri.parse(videoPath).getPath() : videoPath;
+            try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+                return compute(file.getChannel());
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "计算内容指纹失败: " + videoPath + ", 错误: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String compute(FileChannel channel) throws IOException, NoSuchAlgorithmException {
+        long size = channel.size();
+        if (size <= 0) {
+            return null;
+        }
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+
+        // 小文件直接整体计算，大文件取开头、中间和结尾三块
+        long[] positions;
+        if (size <= CHUNK_SIZE * 3L) {
+            positions = new long[]{0};
+            buffer = ByteBuffer.allocate((int) size);
+        } else {
+            positions = new long[]{0, size / 2 - CHUNK_SIZE / 2, size - CHUNK_SIZE};
+        }
+
+        for (long position : positions) {
+            buffer.clear();
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, offset);
+                if (read <= 0) {
+                    break;
+                }
+                offset += read;
+            }
+            buffer.flip();
+            digest.update(buffer);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(Long.toHexString(size)).append('-');
+        for (byte b : digest.digest()) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,164 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import com.inf.myjavavideo.data.model.Video;
+
+import java.io.File;
+
+/**
+ * 统一的视频元数据读取服务
+ * 一次打开MediaMetadataRetriever读取时长、分辨率、码率、旋转角度、格式和帧率，
+ * 不再回退到代价很高的MediaPlayer.prepare；文件大小和修改时间未变化时不重复读取
+ */
+public class VideoMetadataExtractor {
+    private static final String TAG = "VideoMetadataExtractor";
+
+    /**
+     * 视频的技术元数据
+     */
+    public static class Metadata {
+        public long duration;
+        public int width;
+        public int height;
+        public int bitrate;
+        public int rotation;
+        public String mimeType;
+        public float frameRate;
+    }
+
+    /**
+     * 为文件路径或content URI打开MediaMetadataRetriever，失败返回null
+     * 调用方负责release
+     */
+    public static MediaMetadataRetriever openRetriever(Context context, String videoPath) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            if (videoPath.startsWith("content://")) {
+                retriever.setDataSource(context, Uri.parse(videoPath));
+            } else {
+                retriever.setDataSource(videoPath);
+            }
+            return retriever;
+        } catch (Exception e) {
+            Log.e(TAG, "设置数据源失败: " + videoPath + ", 错误: " + e.getMessage());
+            releaseQuietly(retriever);
+            return null;
+        }
+    }
+
+    public static void releaseQuietly(MediaMetadataRetriever retriever) {
+        try {
+            retriever.release();
+        } catch (Exception e) {
+            Log.e(TAG, "释放MediaMetadataRetriever失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 从已打开的retriever读取全部元数据
+     */
+    public static Metadata extract(MediaMetadataRetriever retriever) {
+        Metadata metadata = new Metadata();
+        metadata.duration = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+        metadata.width = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+        metadata.height = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+        metadata.bitrate = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE));
+        metadata.rotation = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+        metadata.mimeType = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_MIMETYPE);
+
+        // 平均帧率 = 总帧数 / 时长，低版本只能读取录制帧率
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            long frameCount = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_FRAME_COUNT));
+            if (frameCount > 0 && metadata.duration > 0) {
+                metadata.frameRate = frameCount * 1000f / metadata.duration;
+            }
+        }
+        if (metadata.frameRate <= 0) {
+            String captureFrameRate = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_CAPTURE_FRAMERATE);
+            if (captureFrameRate != null) {
+                try {
+                    metadata.frameRate = Float.parseFloat(captureFrameRate);
+                } catch (NumberFormatException ignored) {
+                    // 无法解析时保持为0
+                }
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * 计算视频的"大小:修改时间"标识，用于判断是否需要重新读取元数据，无法获取时返回null
+     */
+    public static String metadataKeyOf(Context context, String videoPath) {
+        if (videoPath == null || videoPath.isEmpty()) {
+            return null;
+        }
+
+        if (!videoPath.startsWith("content://")) {
+            File file = new File(videoPath);
+            if (!file.exists()) {
+                return null;
+            }
+            return file.length() + ":" + file.lastModified();
+        }
+
+        try (Cursor cursor = context.getContentResolver().query(Uri.parse(videoPath), null, null, null, null)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+            int modifiedIndex = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+            if (modifiedIndex == -1) {
+                modifiedIndex = cursor.getColumnIndex("date_modified");
+            }
+            long size = sizeIndex != -1 ? cursor.getLong(sizeIndex) : 0;
+            long modified = modifiedIndex != -1 ? cursor.getLong(modifiedIndex) : 0;
+            return size + ":" + modified;
+        } catch (Exception e) {
+            Log.w(TAG, "读取URI信息失败: " + videoPath + ", 错误: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 判断视频是否需要重新读取元数据
+     */
+    public static boolean needsProbe(Video video, String metadataKey) {
+        return metadataKey == null || !metadataKey.equals(video.getMetadataKey());
+    }
+
+    /**
+     * 将元数据写入视频对象，时长只在读取成功时覆盖
+     */
+    public static void applyTo(Video video, Metadata metadata, String metadataKey) {
+        if (metadata.duration > 0) {
+            video.setDuration(metadata.duration);
+        }
+        video.setWidth(metadata.width);
+        video.setHeight(metadata.height);
+        video.setBitrate(metadata.bitrate);
+        video.setRotation(metadata.rotation);
+        video.setMimeType(metadata.mimeType);
+        video.setFrameRate(metadata.frameRate);
+        video.setMetadataKey(metadataKey);
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.inf.myjavavideo.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.inf.myjavavideo.data.AppDatabase;
+import com.inf.myjavavideo.data.dao.PlaylistDao;
+import com.inf.myjavavideo.data.dao.VideoDao;
+import com.inf.myjavavideo.data.model.Playlist;
+import com.inf.myjavavideo.data.model.Video;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 全文搜索
+ * 视频标题、字幕文本和播放列表名称写入FTS4表search_index，中日韩文字切成单字和双字词元，
+ * 其他文字按单词切分，不依赖系统SQLite是否带有中文分词器；
+ * 数据库触发器把变化的记录写入search_pending，搜索前先补齐这些记录的索引
+ */
+public class VideoSearch {
+    private static final String TAG = "VideoSearch";
+    // docid = 记录ID * KIND_COUNT + 类型，删除时可以直接按docid定位
+    public static final int KIND_COUNT = 4;
+    public static final int KIND_VIDEO = 0;
+    public static final int KIND_SUBTITLE = 1;
+    public static final int KIND_PLAYLIST = 2;
+    // 每次补齐索引处理的记录数
+    private static final int FLUSH_BATCH_SIZE = 200;
+    // 一次搜索最多读取的命中行数
+    private static final int MAX_HITS = 1000;
+    // 每个视频最多返回的字幕时间点数
+    private static final int MAX_CUES_PER_VIDEO = 20;
+    private static final int TITLE_MATCH_SCORE = 100;
+
+    private static VideoSearch instance;
+
+    private final AppDatabase database;
+
+    /**
+     * 搜索结果，按相关度排序
+     */
+    public static class Result {
+        public final Video video;
+        public final boolean titleMatch;
+        // 包含搜索词的字幕开始时间（毫秒），按时间升序
+        public final List<Long> cueTimes;
+
+        Result(Video video, boolean titleMatch, List<Long> cueTimes) {
+            this.video = video;
+            this.titleMatch = titleMatch;
+            this.cueTimes = cueTimes;
+        }
+
+        int score() {
+            return (titleMatch ? TITLE_MATCH_SCORE : 0) + cueTimes.size();
+        }
+    }
+
+    private VideoSearch(Context context) {
+        this.database = AppDatabase.getInstance(context);
+    }
+
+    public static synchronized VideoSearch getInstance(Context context) {
+        if (instance == null) {
+            instance = new VideoSearch(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 搜索视频标题和字幕，必须在后台线程调用
+     */
+    public List<Result> searchVideos(String query) {
+        String match = buildMatchQuery(query);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+        flush();
+
+        // 先汇总每个视频的命中情况，再一次读取视频记录
+        Map<Integer, Boolean> titleMatches = new LinkedHashMap<>();
+        Map<Integer, List<Long>> cueTimes = new LinkedHashMap<>();
+        SupportSQLiteDatabase db = database.getOpenHelper().getReadableDatabase();
+        try (Cursor cursor = db.query("SELECT docid % " + KIND_COUNT + ", ref_id, start_time FROM search_index " +
+                        "WHERE search_index MATCH ? AND docid % " + KIND_COUNT + " != " + KIND_PLAYLIST +
+                        " LIMIT " + MAX_HITS,
+                new Object[]{match})) {
+            while (cursor.moveToNext()) {
+                int kind = cursor.getInt(0);
+                int videoId = cursor.getInt(1);
+                if (!titleMatches.containsKey(videoId)) {
+                    titleMatches.put(videoId, false);
+                    cueTimes.put(videoId, new ArrayList<>());
+                }
+                if (kind == KIND_VIDEO) {
+                    titleMatches.put(videoId, true);
+                } else {
+                    cueTimes.get(videoId).add(cursor.getLong(2));
+                }
+            }
+        }
+        if (titleMatches.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        VideoDao videoDao = database.videoDao();
+        List<Integer> videoIds = new ArrayList<>(titleMatches.keySet());
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < videoIds.size(); i += 500) {
+            for (Video video : videoDao.getVideosByIds(videoIds.subList(i, Math.min(i + 500, videoIds.size())))) {
+                List<Long> times = cueTimes.get(video.getId());
+                Collections.sort(times);
+                if (times.size() > MAX_CUES_PER_VIDEO) {
+                    times = new ArrayList<>(times.subList(0, MAX_CUES_PER_VIDEO));
+                }
+                results.add(new Result(video, titleMatches.get(video.getId()), times));
+            }
+        }
+
+        // 标题命中排在前面，其次按命中的字幕条数
+        results.sort((a, b) -> {
+            int result = Integer.compare(b.score(), a.score());
+            if (result != 0) {
+                return result;
+            }
+            String titleA = a.video.getTitle() != null ? a.video.getTitle() : "";
+            String titleB = b.video.getTitle() != null ? b.video.getTitle() : "";
+            return titleA.compareTo(titleB);
+        });
+        return results;
+    }
+
+    /**
+     * 按名称搜索用户的播放列表，必须在后台线程调用
+     */
+    public List<Playlist> searchPlaylists(int userId, String query) {
+        String match = buildMatchQuery(query);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+        flush();
+
+        List<Integer> playlistIds = new ArrayList<>();
+        SupportSQLiteDatabase db = database.getOpenHelper().getReadableDatabase();
+        try (Cursor cursor = db.query("SELECT ref_id FROM search_index " +
+                        "WHERE search_index MATCH ? AND docid % " + KIND_COUNT + " = " + KIND_PLAYLIST +
+                        " LIMIT " + MAX_HITS,
+                new Object[]{match})) {
+            while (cursor.moveToNext()) {
+                playlistIds.add(cursor.getInt(0));
+            }
+        }
+        if (playlistIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        PlaylistDao playlistDao = database.playlistDao();
+        return playlistDao.getPlaylistsByIdsForUser(userId, playlistIds);
+    }
+
+    /**
+     * 补齐触发器记录下来的待索引记录
+     */
+    public synchronized void flush() {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        while (true) {
+            List<Long> docids = new ArrayList<>();
+            try (Cursor cursor = db.query("SELECT docid FROM search_pending LIMIT " + FLUSH_BATCH_SIZE)) {
+                while (cursor.moveToNext()) {
+                    docids.add(cursor.getLong(0));
+                }
+            }
+            if (docids.isEmpty()) {
+                return;
+            }
+
+            db.beginTransaction();
+            try {
+                for (long docid : docids) {
+                    indexRecord(db, docid);
+                    db.execSQL("DELETE FROM search_pending WHERE docid = ?", new Object[]{docid});
+                }
+                db.setTransactionSuccessful();
+            } catch (Exception e) {
+                Log.e(TAG, "更新搜索索引失败: " + e.getMessage());
+                return;
+            } finally {
+                db.endTransaction();
+            }
+        }
+    }
+
+    // 从源表读取记录并写入索引，记录已不存在时只删除旧索引
+    private static void indexRecord(SupportSQLiteDatabase db, long docid) {
+        int kind = (int) (docid % KIND_COUNT);
+        long id = docid / KIND_COUNT;
+        String text = null;
+        long refId = id;
+        long startTime = -1;
+
+        String sql;
+        if (kind == KIND_VIDEO) {
+            sql = "SELECT title, id, -1 FROM videos WHERE id = ?";
+        } else if (kind == KIND_SUBTITLE) {
+            sql = "SELECT text, video_id, start_time FROM subtitles WHERE id = ?";
+        } else {
+            sql = "SELECT name, id, -1 FROM playlists WHERE id = ?";
+        }
+        boolean exists;
+        try (Cursor cursor = db.query(sql, new Object[]{id})) {
+            exists = cursor.moveToFirst();
+            if (exists) {
+                text = cursor.getString(0);
+                refId = cursor.getLong(1);
+                startTime = cursor.getLong(2);
+            }
+        }
+
+        db.execSQL("DELETE FROM search_index WHERE docid = ?", new Object[]{docid});
+        String content = exists ? tokenize(text, false) : "";
+        if (content.isEmpty()) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put("docid", docid);
+        values.put("content", content);
+        values.put("ref_id", refId);
+        values.put("start_time", startTime);
+        db.insert("search_index", SQLiteDatabase.CONFLICT_REPLACE, values);
+    }
+
+    /**
+     * 把搜索词转换为MATCH表达式，所有词元都要出现；没有可搜索的文字时返回null
+     */
+    static String buildMatchQuery(String query) {
+        String tokens = tokenize(query, true);
+        return tokens.isEmpty() ? null : tokens;
+    }
+
+    /**
+     * 切分词元，以空格分隔
+     * 中日韩文字的连续片段切成双字词元，建索引时另外加入单字，便于只输入一个字时也能命中；
+     * 其他字母和数字按单词切分，搜索时作为前缀匹配
+     * @param forQuery 是否为搜索词
+     */
+    static String tokenize(String text, boolean forQuery) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String normalized = text.toLowerCase(Locale.ROOT);
+        StringBuilder tokens = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        List<String> cjkRun = new ArrayList<>();
+
+        int offset = 0;
+        while (offset < normalized.length()) {
+            int codePoint = normalized.codePointAt(offset);
+            offset += Character.charCount(codePoint);
+            if (isCjk(codePoint)) {
+                appendWord(tokens, word, forQuery);
+                cjkRun.add(new String(Character.toChars(codePoint)));
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                appendCjkRun(tokens, cjkRun, forQuery);
+                word.appendCodePoint(codePoint);
+            } else {
+                appendWord(tokens, word, forQuery);
+                appendCjkRun(tokens, cjkRun, forQuery);
+            }
+        }
+        appendWord(tokens, word, forQuery);
+        appendCjkRun(tokens, cjkRun, forQuery);
+        return tokens.toString().trim();
+    }
+
+    private static void appendWord(StringBuilder tokens, StringBuilder word, boolean forQuery) {
+        if (word.length() == 0) {
+            return;
+        }
+        tokens.append(word);
+        if (forQuery) {
+            tokens.append('*');
+        }
+        tokens.append(' ');
+        word.setLength(0);
+    }
+
+    private static void appendCjkRun(StringBuilder tokens, List<String> run, boolean forQuery) {
+        if (run.isEmpty()) {
+            return;
+        }
+        // 搜索时只有一个字才使用单字词元，否则用双字词元缩小范围
+        if (!forQuery || run.size() == 1) {
+            for (String character : run) {
+                tokens.append(character).append(' ');
+            }
+        }
+        for (int i = 0; i + 1 < run.size(); i++) {
+            tokens.append(run.get(i)).append(run.get(i + 1)).append(' ');
+        }
+        run.clear();
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_B
+                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA
+                || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+    }
+}
@@ -0,0 +1,59 @@
+package com.inf.myjavavideo.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * VideoSearch分词和MATCH表达式的本地单元测试
+ */
+public class VideoSearchTest {
+
+    @Test
+    public void tokenize_mixedCjkAndLatin_forIndex() {
+        // 建索引时中文片段同时加入单字和双字词元，其他文字按单词切分并转为小写
+        assertEquals("周 杰 伦 周杰 杰伦 mv 2024", VideoSearch.tokenize("周杰伦MV 2024", false));
+        assertEquals("hello 世 界 世界", VideoSearch.tokenize("Hello世界", false));
+    }
+
+    @Test
+    public void buildMatchQuery_mixedCjkAndLatin() {
+        // 搜索时多字片段只用双字词元，单词作为前缀匹配
+        assertEquals("周杰 杰伦 mv* 2024*", VideoSearch.buildMatchQuery("周杰伦MV 2024"));
+        assertEquals("hello* 世界", VideoSearch.buildMatchQuery("Hello世界"));
+        assertEquals("東京 タワ ワー", VideoSearch.buildMatchQuery("東京、タワー"));
+    }
+
+    @Test
+    public void buildMatchQuery_singleCharacter() {
+        assertEquals("爱", VideoSearch.buildMatchQuery("爱"));
+        assertEquals("a*", VideoSearch.buildMatchQuery("A"));
+        assertEquals("a* 爱", VideoSearch.buildMatchQuery("a 爱"));
+    }
+
+    @Test
+    public void buildMatchQuery_punctuationOnly_returnsNull() {
+        assertNull(VideoSearch.buildMatchQuery("!?.,-"));
+        assertNull(VideoSearch.buildMatchQuery("。，「」"));
+        assertNull(VideoSearch.buildMatchQuery("   "));
+        assertNull(VideoSearch.buildMatchQuery(""));
+        assertNull(VideoSearch.buildMatchQuery(null));
+    }
+
+    @Test
+    public void tokenize_surrogatePairs() {
+        // 扩展B区汉字占两个char，不能从中间切开
+        String first = new String(Character.toChars(0x20000));
+        String second = new String(Character.toChars(0x20001));
+        assertEquals(first + " " + second + " " + first + second,
+                VideoSearch.tokenize(first + second, false));
+        assertEquals(first + second, VideoSearch.buildMatchQuery(first + second));
+        assertEquals(first, VideoSearch.buildMatchQuery(first));
+
+        // 表情符号不是文字，作为分隔符
+        String emoji = new String(Character.toChars(0x1F600));
+        assertEquals("ab* cd*", VideoSearch.buildMatchQuery("ab" + emoji + "cd"));
+        assertNull(VideoSearch.buildMatchQuery(emoji));
+    }
+}